@@ -0,0 +1,123 @@
+package com.icmonroe.calendarview;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+import android.view.View;
+
+import java.util.Calendar;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Paging with snapshot paging and an async event executor binds no month while the pager
+ * settles: the pages it instantiates were bound ahead of time and kept up to date in the pool.
+ */
+public class SnapshotPagingTest extends InstrumentationTestCase {
+
+    private ExecutorService executor;
+    private CalendarView calendarView;
+    private int monthBinds;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        executor = Executors.newSingleThreadExecutor();
+        final Context context = getInstrumentation().getTargetContext();
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                calendarView = new CalendarView(context);
+                calendarView.setEventExecutor(executor);
+                calendarView.setEventRangeIndicator(new CalendarView.EventRangeIndicator() {
+                    @Override
+                    public void getEventCounts(Calendar firstDay, int dayCount, int[] counts) {
+                        for(int i=0;i<dayCount;i++) counts[i] = i % 3;
+                    }
+                });
+                calendarView.setMetricsListener(new CalendarView.CalendarMetricsListener() {
+                    @Override
+                    public void onPageInstantiated(long nanos, boolean recycled) {}
+
+                    @Override
+                    public void onMonthBound(long nanos) {
+                        monthBinds++;
+                    }
+
+                    @Override
+                    public void onCellBound(long nanos, boolean recycled) {}
+
+                    @Override
+                    public void onEventLookup(long nanos, int dayCount) {}
+
+                    @Override
+                    public void onCircleDrawn(long nanos) {}
+                });
+                calendarView.measure(
+                        View.MeasureSpec.makeMeasureSpec(480, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(800, View.MeasureSpec.AT_MOST)
+                );
+                calendarView.layout(0, 0, calendarView.getMeasuredWidth(), calendarView.getMeasuredHeight());
+                calendarView.setSnapshotPaging(true);
+            }
+        });
+        settle();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        executor.shutdownNow();
+        super.tearDown();
+    }
+
+    /**
+     * Runs the idle passes that prepare pages and delivers every event load.
+     */
+    private void settle() throws Exception {
+        for(int pass=0;pass<8;pass++){
+            // Loads are submitted from the main thread, then delivered back to it
+            getInstrumentation().waitForIdleSync();
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {}
+            }).get();
+            getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {}
+            });
+        }
+        getInstrumentation().waitForIdleSync();
+    }
+
+    private void pageForward() throws Exception {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                monthBinds = 0;
+                // Populates and scrolls as a swipe does once the finger is lifted
+                calendarView.setCurrentItem(calendarView.getCurrentItem() + 1, false);
+            }
+        });
+    }
+
+    public void testSettleBindsNoMonth() throws Exception {
+        pageForward();
+        assertEquals(0, monthBinds);
+    }
+
+    public void testSettleBindsNoMonthAfterDeliveriesAndTaps() throws Exception {
+        // The neighbours' loads, prefetches and a tap land while the prepared pages are pooled
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                calendarView.setDaySelected(Calendar.getInstance());
+                calendarView.invalidateAllEvents();
+            }
+        });
+        settle();
+        pageForward();
+        assertEquals(0, monthBinds);
+        // The loads the swipe prefetched are delivered without binding either
+        settle();
+        assertEquals(0, monthBinds);
+    }
+}
@@ -1,21 +1,29 @@
 package com.icmonroe.calendarview;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.content.res.Resources;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.graphics.BitmapShader;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Paint.Style;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.Shader;
+import android.os.Build;
 import android.os.Handler;
+import android.os.Looper;
 import android.util.AttributeSet;
 import android.view.View;
 import android.view.animation.DecelerateInterpolator;
 import android.view.animation.Interpolator;
 
+import java.util.concurrent.Executor;
+
 /**
  * Created by Ian Monroe on 10/24/2014.
  *
@@ -48,6 +56,10 @@ public class AdaptableCircleView extends View {
     private RectF paddedRectF;
     private Rect originalRect;
     private BitmapShader shader;
+    // Fits the image into the view through the shader instead of copying it
+    private final Matrix shaderMatrix = new Matrix();
+    private final RectF imageSourceRect = new RectF();
+    private final RectF imageTargetRect = new RectF();
     private float absoluteX;
     private float absoluteY;
 
@@ -93,15 +105,26 @@ public class AdaptableCircleView extends View {
             if(imageBitmap!=null){
                 absoluteX = (getWidth() - imageBitmap.getWidth()) / 2.0f;
                 absoluteY = (getHeight() - imageBitmap.getHeight()) / 2.0f;
-
-                shader = new BitmapShader(renderSquareImage(), Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
-                imagePaint.setShader(shader);
+                updateShaderMatrix();
             }
             originalRect.set(0, 0, getWidth(), getHeight());
         }
+        // A decode asked for before layout waited to know the size to decode to
+        startPendingDecode();
     }
 
+    /**
+     * Sets the percentage right away, stopping any running animation.
+     */
     public void setPercentage(float percentage){
+        if(animating){
+            animating = false;
+            CircleAnimator.get().cancel(this);
+        }
+        applyPercentage(percentage);
+    }
+
+    private void applyPercentage(float percentage){
         this.percentage = percentage;
         invalidate();
     }
@@ -116,52 +139,68 @@ public class AdaptableCircleView extends View {
         invalidate();
     }
 
-    private Handler animationHandler;
-    private Runnable animationRunnable;
     private Interpolator animationInterpolator = new DecelerateInterpolator();
 
-    private float timePast;
-    private float diff;
-    // fps not guaranteed
-    private int fps = 60;
-    // Time frame takes (in a perfect world, not guaranteed)
-    private float frameTime;
+    private boolean animating;
+    private float animationFrom;
+    private float animationTo;
+    private int animationTime;
+    // Frame time the animation started at, -1 until its first frame
+    private long animationStart;
 
     /**
-     * Sets the percentage of the circle view with an animation transition for given time
+     * Sets the percentage of the circle view with an animation transition for given time.
+     * Replaces any animation already running. All circles are stepped together by
+     * {@link CircleAnimator} once per display frame.
      * @param newPercentage New percentage the pie should file (0.0f - 1.0f);
      * @param animationTime Time animation should take
      */
     public void setPercentage(final float newPercentage, final int animationTime){
-        frameTime = 1000/fps;
-        timePast = 0;
-        diff = newPercentage - percentage;
+        animationFrom = percentage;
+        animationTo = newPercentage;
+        this.animationTime = animationTime;
+        animationStart = -1;
+        animating = true;
+        CircleAnimator.get().start(this);
+    }
 
-        // Create a runnable that will represent the actions of a frame
-        animationRunnable = new Runnable() {
-            @Override
-            public void run() {
-                timePast += frameTime;
-                // The percent of the way done with the animation
-                float percentInAnimation = (timePast / animationTime);
-
-                // Use of interpolation can be set (default is Decelaration)
-                float interpolationValue =
-                        (diff*animationInterpolator.getInterpolation(percentInAnimation))+(newPercentage-diff);
-                setPercentage(interpolationValue);
-
-                // If the percent has not completed than call it again at the appropriate time
-                if(percentInAnimation<1.0f){
-                    animationHandler.postDelayed(animationRunnable, (long) frameTime);
-                    // Else set the final percent
-                }else{
-                    setPercentage(newPercentage);
-                }
-            }
-        };
-        // Start initial handler and frame
-        animationHandler = new Handler();
-        animationHandler.post(animationRunnable);
+    /**
+     * Steps the animation to the given frame time.
+     * @return Whether the animation still runs after this frame
+     */
+    boolean animationFrame(long frameTimeMillis){
+        if(!animating) return false;
+        if(animationStart<0) animationStart = frameTimeMillis;
+        // The percent of the way done with the animation
+        float percentInAnimation = animationTime>0 ? (frameTimeMillis - animationStart) / (float) animationTime : 1f;
+        if(percentInAnimation>=1f){
+            animating = false;
+            applyPercentage(animationTo);
+            return false;
+        }
+        // Use of interpolation can be set (default is Decelaration)
+        applyPercentage(animationFrom + (animationTo - animationFrom) * animationInterpolator.getInterpolation(percentInAnimation));
+        return true;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        startPendingDecode();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        // Stop animating off screen, jumping to where the animation would have ended
+        if(animating) setPercentage(animationTo);
+        // Off screen the decoded image goes back to the pool and a decode in flight is dropped,
+        // both are decoded again once attached
+        if(imageDecoder!=null){
+            decodeGeneration++;
+            decodePending = true;
+            setImage(null, false);
+        }
     }
 
     public void setInterpolator(Interpolator interpolator){
@@ -169,25 +208,206 @@ public class AdaptableCircleView extends View {
     }
 
     private Bitmap imageBitmap;
-    private Bitmap squareImageBitmap;
+    // Whether imageBitmap was decoded here and goes back to the BitmapPool when replaced
+    private boolean ownsImageBitmap;
 
     /**
-     * Adds image into queue. We the view and ensure its height and width then it will be
-     * processed.
+     * Sets the image to show. It is fitted to the view through the shader's matrix, so no copy
+     * of it is made.
      * @param image bitmap image you want viewed
      * @param round whether to round the image
      */
     public void setImageBitmap(Bitmap image,boolean round){
+        // Any decode still running would replace this image
+        cancelDecode();
+        setImage(image, false);
+    }
+
+    private void setImage(Bitmap image, boolean owned){
+        if(ownsImageBitmap && imageBitmap!=image) BitmapPool.get().release(imageBitmap);
         imageBitmap = image;
+        ownsImageBitmap = owned;
         if(image!=null){
-            // Handle fill
-            shader = new BitmapShader(renderSquareImage(), Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+            shader = new BitmapShader(image, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
             imagePaint.setShader(shader);
+            updateShaderMatrix();
             // Handle not fill
             absoluteX = (getWidth() - imageBitmap.getWidth()) / 2.0f;
             absoluteY = (getHeight() - imageBitmap.getHeight()) / 2.0f;
+        }else{
+            shader = null;
+            imagePaint.setShader(null);
+        }
+        invalidate();
+    }
 
-            invalidate();
+    /**
+     * Maps the image into the view less the image padding, its centered square for
+     * {@link IMAGE_TYPE#CENTER_CROP} or all of it stretched for {@link IMAGE_TYPE#FILL}.
+     */
+    private void updateShaderMatrix(){
+        if(shader==null) return;
+        if(getWidth()>0 && getHeight()>0){
+            int width = imageBitmap.getWidth();
+            int height = imageBitmap.getHeight();
+            if(imageType==IMAGE_TYPE.CENTER_CROP){
+                int halfMin = Math.min(width, height) / 2;
+                imageSourceRect.set(width/2 - halfMin, height/2 - halfMin, width/2 + halfMin, height/2 + halfMin);
+            }else{
+                imageSourceRect.set(0, 0, width, height);
+            }
+            imageTargetRect.set(imagePadding, imagePadding, getWidth()-imagePadding, getHeight()-imagePadding);
+            shaderMatrix.setRectToRect(imageSourceRect, imageTargetRect, Matrix.ScaleToFit.FILL);
+        }else{
+            // Not laid out yet, shown as is until we know the size
+            shaderMatrix.reset();
+        }
+        shader.setLocalMatrix(shaderMatrix);
+    }
+
+    // Shared by every circle, decodes only post back to the UI thread
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Decodes an image, into options.inBitmap when set.
+     */
+    private interface ImageDecoder{
+        Bitmap decode(BitmapFactory.Options options);
+    }
+
+    private int decodeGeneration;
+    // Decodes the image shown or being decoded, kept to decode it again when reattached
+    private ImageDecoder imageDecoder;
+    private Executor decodeExecutor;
+    // The image is to be decoded once the view is laid out
+    private boolean decodePending;
+
+    /**
+     * Decodes an image file on the executor, downsampled to about the size of the view, then
+     * shows it. The decoded bitmap is taken from and given back to a shared pool of bitmaps,
+     * given back while the view is detached and decoded again once it is attached.
+     */
+    public void setImageFile(final String path, Executor executor){
+        requestDecode(new ImageDecoder() {
+            @Override
+            public Bitmap decode(BitmapFactory.Options options) {
+                return BitmapFactory.decodeFile(path, options);
+            }
+        }, executor);
+    }
+
+    /**
+     * Same as {@link #setImageFile(String, Executor)} for a drawable resource.
+     */
+    public void setImageResource(final int resId, Executor executor){
+        final Resources resources = getResources();
+        requestDecode(new ImageDecoder() {
+            @Override
+            public Bitmap decode(BitmapFactory.Options options) {
+                return BitmapFactory.decodeResource(resources, resId, options);
+            }
+        }, executor);
+    }
+
+    private void requestDecode(ImageDecoder decoder, Executor executor){
+        decodeGeneration++;
+        imageDecoder = decoder;
+        decodeExecutor = executor;
+        decodePending = true;
+        startPendingDecode();
+    }
+
+    private void startPendingDecode(){
+        if(!decodePending || getWidth()<=0 || getHeight()<=0) return;
+        decodePending = false;
+        // At least a pixel, the padding may take up the whole view
+        int targetWidth = Math.max(1, getWidth() - 2*imagePadding);
+        int targetHeight = Math.max(1, getHeight() - 2*imagePadding);
+        decodeExecutor.execute(new DecodeTask(imageDecoder, decodeGeneration, targetWidth, targetHeight));
+    }
+
+    private void cancelDecode(){
+        decodeGeneration++;
+        imageDecoder = null;
+        decodeExecutor = null;
+        decodePending = false;
+    }
+
+    private void onDecoded(DecodeTask task, Bitmap bitmap){
+        if(task.generation!=decodeGeneration){
+            // Replaced while decoding
+            BitmapPool.get().release(bitmap);
+            return;
+        }
+        if(bitmap!=null) setImage(bitmap, true);
+    }
+
+    private final class DecodeTask implements Runnable{
+
+        final ImageDecoder decoder;
+        final int generation;
+        final int targetWidth;
+        final int targetHeight;
+
+        DecodeTask(ImageDecoder decoder, int generation, int targetWidth, int targetHeight){
+            this.decoder = decoder;
+            this.generation = generation;
+            this.targetWidth = targetWidth;
+            this.targetHeight = targetHeight;
+        }
+
+        @Override
+        public void run() {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            decoder.decode(options);
+            int sampleSize = 1;
+            // Largest power of two that keeps the image at least as big as the view
+            while(options.outWidth/(sampleSize*2)>=targetWidth && options.outHeight/(sampleSize*2)>=targetHeight){
+                sampleSize *= 2;
+            }
+            int decodedWidth = (options.outWidth + sampleSize - 1) / sampleSize;
+            int decodedHeight = (options.outHeight + sampleSize - 1) / sampleSize;
+
+            options = new BitmapFactory.Options();
+            options.inSampleSize = sampleSize;
+            Bitmap reused = null;
+            if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB){
+                reused = reusableBitmap(options, sampleSize, decodedWidth, decodedHeight);
+            }
+            Bitmap bitmap;
+            try{
+                bitmap = decoder.decode(options);
+            }catch (IllegalArgumentException e){
+                // The pooled bitmap did not fit after all, decode into a new one
+                if(reused!=null) reused.recycle();
+                options.inBitmap = null;
+                bitmap = decoder.decode(options);
+            }
+            // Nothing decoded, the pooled bitmap was left untouched
+            if(bitmap==null && reused!=null) BitmapPool.get().release(reused);
+            final Bitmap decoded = bitmap;
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onDecoded(DecodeTask.this, decoded);
+                }
+            });
+        }
+
+        @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+        private Bitmap reusableBitmap(BitmapFactory.Options options, int sampleSize, int width, int height){
+            // Decoded bitmaps must be mutable to be pooled again later
+            options.inMutable = true;
+            Bitmap reused;
+            if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT){
+                reused = BitmapPool.get().acquireAtLeast(width * height * 4);
+            }else{
+                // Before KitKat only a bitmap of the exact size can be reused, without sampling
+                reused = sampleSize==1 ? BitmapPool.get().acquire(width, height, Bitmap.Config.ARGB_8888) : null;
+            }
+            options.inBitmap = reused;
+            return reused;
         }
     }
 
@@ -202,6 +422,7 @@ public class AdaptableCircleView extends View {
 
     public void setImagePadding(int imagePadding){
         this.imagePadding = imagePadding;
+        updateShaderMatrix();
         invalidate();
     }
 
@@ -215,50 +436,10 @@ public class AdaptableCircleView extends View {
 
     public void setImageType(IMAGE_TYPE type){
         imageType = type;
-        shader = new BitmapShader(renderSquareImage(), Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
-        imagePaint.setShader(shader);
+        updateShaderMatrix();
         invalidate();
     }
 
-    private Bitmap renderSquareImage(){
-        if(getWidth()>0 && getHeight()>0){
-            /*
-            squareImageBitmap = ThumbnailUtils.extractThumbnail(imageBitmap,getWidth(),getHeight());
-            if(imagePadding>0) {
-                squareImageBitmap = padBitmap(squareImageBitmap, imagePadding);
-            }
-            */
-            squareImageBitmap = padBitmap(imageBitmap,imagePadding);
-            return squareImageBitmap;
-        }
-        return imageBitmap;
-    }
-
-    private Bitmap padBitmap(Bitmap bitmap,int padding){
-        Bitmap paddedBitmap = Bitmap.createBitmap(
-                getWidth(),
-                getHeight(),
-                Bitmap.Config.ARGB_8888);
-
-        Canvas canvas = new Canvas(paddedBitmap);
-        canvas.drawBitmap(
-                bitmap,
-                imageType== IMAGE_TYPE.CENTER_CROP ? squareImageRect(bitmap) : new Rect(0,0,bitmap.getWidth(),bitmap.getHeight()),
-                new RectF(padding,padding,getWidth()-padding,getHeight()-padding),
-                new Paint(Paint.FILTER_BITMAP_FLAG));
-        return paddedBitmap;
-    }
-
-
-    private Rect squareImageRect(Bitmap bitmap){
-        int halfMin = Math.min(bitmap.getWidth(), bitmap.getHeight()) / 2;
-        int left = (bitmap.getWidth()/2) - halfMin;
-        int top = (bitmap.getHeight()/2) - halfMin;
-        int right = (bitmap.getWidth()/2) + halfMin;
-        int bottom = (bitmap.getHeight()/2) + halfMin;
-        return new Rect(left,top,right,bottom);
-    }
-
     private int insetPadding = 0;
 
     public void setInsetPadding(int padding){
@@ -272,19 +453,111 @@ public class AdaptableCircleView extends View {
         invalidate();
     }
 
+    private int[] segmentCounts;
+    private int segmentOffset;
+    private int segmentLength;
+    private int[] segmentColors;
+    private Paint segmentPaint;
+    private final RectF segmentRect = new RectF();
+
+    /**
+     * Draws a ring split into arcs sized by their counts. The arrays are read as is when
+     * drawing, so circles can share one packed array instead of copies.
+     * @param counts Packed counts, this circle's segments being [offset, offset+length)
+     * @param colors Color of each segment, at least length long
+     */
+    public void setSegments(int[] counts, int offset, int length, int[] colors){
+        segmentCounts = counts;
+        segmentOffset = offset;
+        segmentLength = length;
+        segmentColors = colors;
+        if(counts!=null && segmentPaint==null){
+            segmentPaint = newSegmentPaint(3 * getResources().getDisplayMetrics().density);
+        }
+        invalidate();
+    }
+
+    public void clearSegments(){
+        if(segmentCounts==null) return;
+        segmentCounts = null;
+        segmentColors = null;
+        invalidate();
+    }
+
+    static Paint newSegmentPaint(float width){
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setStyle(Style.STROKE);
+        paint.setStrokeWidth(width);
+        return paint;
+    }
+
+    /**
+     * Draws counts[offset..offset+length) as a ring of arcs around the oval, starting at the
+     * top, with one paint whose color is changed per segment.
+     */
+    static void drawSegments(Canvas canvas, RectF oval, int[] counts, int offset, int length, int[] colors, Paint paint){
+        int total = 0;
+        for(int i=0;i<length;i++) total += counts[offset+i];
+        if(total<=0) return;
+        float start = 270f;
+        for(int i=0;i<length;i++){
+            int count = counts[offset+i];
+            if(count<=0) continue;
+            float sweep = 360f * count / total;
+            paint.setColor(colors[i]);
+            canvas.drawArc(oval, start, sweep, false, paint);
+            start += sweep;
+        }
+    }
+
+    private OnDrawListener onDrawListener;
+
+    public interface OnDrawListener{
+        /**
+         * @param nanos Time the circle took to draw itself
+         */
+        public void onDraw(long nanos);
+    }
+
+    /**
+     * Sets a listener told how long each draw took. Nothing is timed without one.
+     */
+    public void setOnDrawListener(OnDrawListener listener){
+        onDrawListener = listener;
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
+        OnDrawListener listener = onDrawListener;
+        long start = listener!=null ? System.nanoTime() : 0;
         super.onDraw(canvas);
         // Draw background circle
         canvas.drawCircle(getWidth()/2,getHeight()/2,getWidth()/2 - largestPadding(),backgroundPaint);
         // Draw arc (pie thing) based on current percentage
         float sweepValue = 360f * percentage;
         canvas.drawArc(paddedRectF,270f,sweepValue,true,foregroundPaint);
+        // Draw segmented ring if any
+        if(segmentCounts!=null){
+            float halfWidth = segmentPaint.getStrokeWidth() / 2;
+            segmentRect.set(paddedRectF);
+            segmentRect.inset(halfWidth, halfWidth);
+            drawSegments(canvas, segmentRect, segmentCounts, segmentOffset, segmentLength, segmentColors, segmentPaint);
+        }
         // Draw image if need be
         if(imageBitmap!=null) {
-            if(imageType!= IMAGE_TYPE.ABSOLUTE) canvas.drawCircle(getWidth()/2 ,getHeight()/2,getWidth()/2 - largestPadding() - insetPadding, imagePaint);
+            if(imageType!= IMAGE_TYPE.ABSOLUTE){
+                // The image padding is left empty, as the shader would otherwise smear the edges into it
+                boolean clip = imagePadding>0 && getWidth()>0;
+                if(clip){
+                    canvas.save();
+                    canvas.clipRect(imageTargetRect);
+                }
+                canvas.drawCircle(getWidth()/2 ,getHeight()/2,getWidth()/2 - largestPadding() - insetPadding, imagePaint);
+                if(clip) canvas.restore();
+            }
             else canvas.drawBitmap(imageBitmap, absoluteX, absoluteY, imagePaint);
         }
+        if(listener!=null) listener.onDraw(System.nanoTime() - start);
     }
 
     /* Volley required
@@ -304,7 +577,7 @@ public class AdaptableCircleView extends View {
     */
 
     public void clearImage() {
-        imageBitmap = null;
-        invalidate();
+        cancelDecode();
+        setImage(null, false);
     }
 }
\ No newline at end of file
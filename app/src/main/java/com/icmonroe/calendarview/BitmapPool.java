@@ -0,0 +1,100 @@
+package com.icmonroe.calendarview;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.ArrayList;
+
+/**
+ * Bitmaps no longer shown, kept to be decoded into again instead of allocating new ones. Looked
+ * up by size and config and bounded by a byte budget, oldest bitmaps are recycled first. Safe
+ * to use from any thread.
+ */
+final class BitmapPool {
+
+    private static final int DEFAULT_MAX_BYTES = 4*1024*1024;
+
+    private static BitmapPool instance;
+
+    static synchronized BitmapPool get(){
+        if(instance==null) instance = new BitmapPool(DEFAULT_MAX_BYTES);
+        return instance;
+    }
+
+    // Oldest first
+    private final ArrayList<Bitmap> bitmaps = new ArrayList<Bitmap>();
+    private int maxBytes;
+    private int sizeBytes;
+
+    BitmapPool(int maxBytes){
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return A pooled bitmap of exactly this size and config, or null if there is none
+     */
+    synchronized Bitmap acquire(int width, int height, Bitmap.Config config){
+        for(int i=bitmaps.size()-1;i>=0;i--){
+            Bitmap bitmap = bitmaps.get(i);
+            if(bitmap.getWidth()==width && bitmap.getHeight()==height && bitmap.getConfig()==config){
+                bitmaps.remove(i);
+                sizeBytes -= byteCount(bitmap);
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return A pooled bitmap whose memory can hold at least the given bytes, or null. Only
+     * useful where a decode may reconfigure the bitmap it reuses, from KitKat on.
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    synchronized Bitmap acquireAtLeast(int bytes){
+        for(int i=bitmaps.size()-1;i>=0;i--){
+            Bitmap bitmap = bitmaps.get(i);
+            if(bitmap.getAllocationByteCount()>=bytes){
+                bitmaps.remove(i);
+                sizeBytes -= byteCount(bitmap);
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hands a bitmap over to the pool. It must no longer be drawn by the caller.
+     */
+    synchronized void release(Bitmap bitmap){
+        if(bitmap==null || bitmap.isRecycled() || !bitmap.isMutable()) return;
+        bitmaps.add(bitmap);
+        sizeBytes += byteCount(bitmap);
+        trim(maxBytes);
+    }
+
+    synchronized void setMaxBytes(int maxBytes){
+        this.maxBytes = maxBytes;
+        trim(maxBytes);
+    }
+
+    synchronized int sizeBytes(){
+        return sizeBytes;
+    }
+
+    synchronized void clear(){
+        trim(0);
+    }
+
+    private void trim(int bytes){
+        while(sizeBytes>bytes && !bitmaps.isEmpty()){
+            Bitmap bitmap = bitmaps.remove(0);
+            sizeBytes -= byteCount(bitmap);
+            bitmap.recycle();
+        }
+    }
+
+    private static int byteCount(Bitmap bitmap){
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+}
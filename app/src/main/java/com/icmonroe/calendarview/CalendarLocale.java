@@ -0,0 +1,116 @@
+package com.icmonroe.calendarview;
+
+import java.text.DateFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Everything the calendar shows that depends on the locale, worked out once per locale: its
+ * first day of week, the weekday header labels and the month titles. Instances are shared and
+ * safe to use from any thread.
+ */
+final class CalendarLocale {
+
+    static final String DEFAULT_MONTH_YEAR_PATTERN = "LLLL yyyy";
+
+    // Must be a power of two, titles with the year of about 21 years
+    private static final int TITLE_CACHE_SIZE = 256;
+
+    private static final HashMap<String,CalendarLocale> instances = new HashMap<String,CalendarLocale>();
+
+    final Locale locale;
+    // First day of week with Sunday as 0 through Saturday as 6
+    final int firstDayOfWeek;
+    // Narrow weekday labels in column order, starting at the first day of week
+    final String[] weekdayLabels = new String[7];
+    // Stand alone month names, January first
+    final String[] monthNames = new String[12];
+
+    private final SimpleDateFormat monthYearFormat;
+    private final Calendar formatCalendar;
+    private final Title[] titles = new Title[TITLE_CACHE_SIZE];
+
+    private static final class Title{
+        final int monthIndex;
+        final String text;
+
+        Title(int monthIndex, String text){
+            this.monthIndex = monthIndex;
+            this.text = text;
+        }
+    }
+
+    private CalendarLocale(Locale locale, String monthYearPattern){
+        this.locale = locale;
+        // Formatting is done in UTC so no date falls in a daylight saving gap
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        formatCalendar = Calendar.getInstance(utc, locale);
+        firstDayOfWeek = formatCalendar.getFirstDayOfWeek() - Calendar.SUNDAY;
+
+        String[] shortWeekdays = new DateFormatSymbols(locale).getShortWeekdays();
+        for(int i=0;i<7;i++){
+            String weekday = shortWeekdays[Calendar.SUNDAY + (firstDayOfWeek + i) % 7];
+            weekdayLabels[i] = weekday.substring(0, weekday.offsetByCodePoints(0, 1)).toUpperCase(locale);
+        }
+
+        SimpleDateFormat monthFormat = new SimpleDateFormat("LLLL", locale);
+        monthFormat.setTimeZone(utc);
+        formatCalendar.clear();
+        for(int month=0;month<12;month++){
+            formatCalendar.set(2000, month, 1);
+            monthNames[month] = monthFormat.format(formatCalendar.getTime());
+        }
+
+        monthYearFormat = new SimpleDateFormat(monthYearPattern, locale);
+        monthYearFormat.setTimeZone(utc);
+    }
+
+    /**
+     * @return The shared metadata of the locale, with month titles such as "November 2014"
+     */
+    static CalendarLocale get(Locale locale){
+        return get(locale, DEFAULT_MONTH_YEAR_PATTERN);
+    }
+
+    /**
+     * @param monthYearPattern {@link SimpleDateFormat} pattern of titles with the year
+     */
+    static CalendarLocale get(Locale locale, String monthYearPattern){
+        String key = locale.toString() + '|' + monthYearPattern;
+        synchronized (instances){
+            CalendarLocale calendarLocale = instances.get(key);
+            if(calendarLocale==null){
+                calendarLocale = new CalendarLocale(locale, monthYearPattern);
+                instances.put(key, calendarLocale);
+            }
+            return calendarLocale;
+        }
+    }
+
+    /**
+     * @return Title of the month such as "November 2014", or "November" without the year
+     */
+    String monthTitle(int monthIndex, boolean includeYear){
+        if(!includeYear) return monthNames[DayMath.monthOfMonthIndex(monthIndex)];
+        int slot = monthIndex & (TITLE_CACHE_SIZE-1);
+        Title title = titles[slot];
+        if(title==null || title.monthIndex!=monthIndex){
+            // Racing threads at worst format the same title twice
+            title = new Title(monthIndex, formatMonthYear(monthIndex));
+            titles[slot] = title;
+        }
+        return title.text;
+    }
+
+    private String formatMonthYear(int monthIndex){
+        // The format and its calendar are not thread safe
+        synchronized (monthYearFormat){
+            formatCalendar.clear();
+            formatCalendar.set(DayMath.yearOfMonthIndex(monthIndex), DayMath.monthOfMonthIndex(monthIndex), 1);
+            return monthYearFormat.format(formatCalendar.getTime());
+        }
+    }
+}
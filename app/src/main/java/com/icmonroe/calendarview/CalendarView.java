@@ -1,11 +1,32 @@
 package com.icmonroe.calendarview;
 
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
 import android.support.v4.view.PagerAdapter;
 import android.support.v4.view.ViewPager;
+import android.text.format.DateFormat;
 import android.util.AttributeSet;
+import android.util.DisplayMetrics;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.TypedValue;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.BaseAdapter;
@@ -14,16 +35,39 @@ import android.widget.GridView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
-import java.text.SimpleDateFormat;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by Ian Monroe on 11/6/14.
  */
 public class CalendarView extends ViewPager {
 
+    // Marks that no day is set where an epoch day is expected
+    static final int NO_DAY = Integer.MIN_VALUE;
+
+    /**
+     * Months before or after today that make the range effectively unbounded, a thousand years.
+     * Pass to {@link #setNumberOfMonthsBefore(int)} or {@link #setNumberOfMonthsAfter(int)}.
+     */
+    public static final int UNBOUNDED = 12*1000;
+
     Calendar today = Calendar.getInstance();
+    int todayEpochDay = DayMath.epochDay(today);
+    int todayMonthIndex = DayMath.monthIndex(today);
     Calendar selectedDay = today;
     CalendarViewAdapter calendarViewAdapter;
     boolean showMonthTitle = true;
@@ -35,6 +79,47 @@ public class CalendarView extends ViewPager {
     int intrinsicHeight;
     int height;
     int primaryColor = 0xFF1E88E5;
+    RENDER_MODE renderMode = RENDER_MODE.VIEWS;
+    MonthPagePool pagePool = new MonthPagePool();
+
+    DECORATION_MODE decorationMode = DECORATION_MODE.INDICATOR;
+    int heatmapLowColor = 0xFFBBDEFB;
+    int heatmapHighColor = 0xFF0D47A1;
+    int heatmapMaxCount = 8;
+    int[] categoryColors;
+    EventCategoryIndicator categoryIndicator;
+
+    /**
+     * How days that have events are decorated. Today and the selected day keep their look.
+     */
+    public enum DECORATION_MODE{
+        // Grey ring on days with at least one event
+        INDICATOR,
+        // Circle colored by the day's event count, see setHeatmapColors
+        HEATMAP,
+        // Ring split by the day's events per category, see setEventCategories
+        CATEGORY_RINGS
+    }
+
+    DISPLAY_MODE displayMode = DISPLAY_MODE.MONTH;
+    CalendarYearAdapter calendarYearAdapter;
+    CalendarWeekAdapter calendarWeekAdapter;
+
+    public enum DISPLAY_MODE{
+        // One month per page
+        MONTH,
+        // Twelve mini-months per page, tapping one shows it in MONTH mode
+        YEAR,
+        // A single row of seven days per page, paged week by week
+        WEEK
+    }
+
+    public enum RENDER_MODE{
+        // A GridView of inflated CalendarDayViews per month
+        VIEWS,
+        // One CalendarMonthCanvasView per month drawing every cell itself
+        CANVAS
+    }
 
     public CalendarView(Context context) {
         super(context);
@@ -47,6 +132,7 @@ public class CalendarView extends ViewPager {
     }
 
     private void sharedConstructor(){
+        createdAt = SystemClock.uptimeMillis();
         rowHeight = (int) getContext().getResources().getDimension(R.dimen.calendar_day_height);
         height = intrinsicHeight = (rowHeight*8);
         setOnPageChangeListener(new ChangeListener());
@@ -56,354 +142,2988 @@ public class CalendarView extends ViewPager {
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        heightMeasureSpec = MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY);
+        heightMeasureSpec = MeasureSpec.makeMeasureSpec(getLayoutHeight(), MeasureSpec.EXACTLY);
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
     }
 
-    public void setPrimaryColor(int color){
-        primaryColor = color;
-    }
+    HEIGHT_MODE heightMode = HEIGHT_MODE.FIXED;
+    // Height drawn in CONTENT mode, between the two months' heights while scrolling
+    int visibleHeight = -1;
+    private OnVisibleHeightChangeListener visibleHeightListener;
 
-    public void setNumberOfMonthsBefore(int i){
-        numberOfMonthsBefore = i;
-        getAdapter().notifyDataSetChanged();
-        setDaySelected(today);
+    public enum HEIGHT_MODE{
+        // Always as tall as the tallest month
+        FIXED,
+        // As tall as the current month's rows
+        CONTENT
     }
 
-    public void setNumberOfMonthsAfter(int i){
-        numberOfMonthsAfter = i;
-        getAdapter().notifyDataSetChanged();
-        setDaySelected(today);
+    public static interface OnVisibleHeightChangeListener{
+        /**
+         * Called on every scroll frame the visible height changes, for example to translate
+         * the views below the calendar. The calendar itself is not laid out again.
+         */
+        public void onVisibleHeightChanged(int visibleHeight);
     }
 
-    public void setShowMonthTitle(boolean show){ showMonthTitle = show; }
+    /**
+     * In {@link HEIGHT_MODE#CONTENT} the calendar is as tall as the current month. While
+     * paging, what is drawn is clipped to a height blended between the two months shown, and
+     * the view is laid out only when scrolling starts and stops: as tall as the tallest month
+     * it could scroll to, then as tall as the month it settled on.
+     */
+    public void setHeightMode(HEIGHT_MODE mode){
+        if(mode==heightMode) return;
+        heightMode = mode;
+        visibleHeight = -1;
+        requestLayout();
+        invalidate();
+    }
 
-    public void setShowDaysOfWeekRow(boolean show){ showDaysOfWeekRow = show; }
+    public void setOnVisibleHeightChangeListener(OnVisibleHeightChangeListener listener){
+        visibleHeightListener = listener;
+    }
 
-    public void setIncludeYearInTitle(boolean include){ includeYearInTitle = include; }
+    /**
+     * @return Height the calendar is drawn at, less than its laid out height while scrolling
+     * between months of different heights
+     */
+    public int getVisibleHeight(){
+        return visibleHeight>=0 ? visibleHeight : getLayoutHeight();
+    }
 
-    private CalendarViewListener calendarViewListener;
+    private boolean isContentHeight(){
+        return heightMode==HEIGHT_MODE.CONTENT && displayMode==DISPLAY_MODE.MONTH;
+    }
 
-    public void setCalendarViewListener(CalendarViewListener listener){
-        calendarViewListener = listener;
+    private int getLayoutHeight(){
+        if(displayMode==DISPLAY_MODE.WEEK) return rowHeight * (showDaysOfWeekRow ? 2 : 1);
+        if(!isContentHeight()) return height;
+        int current = getCurrentItem();
+        int layoutHeight = getHeightOfPosition(current);
+        if(scrollState!=SCROLL_STATE_IDLE){
+            layoutHeight = Math.max(layoutHeight, getHeightOfPosition(current - 1));
+            layoutHeight = Math.max(layoutHeight, getHeightOfPosition(current + 1));
+        }
+        return layoutHeight;
     }
 
-    public void setMonth(int year,int month){
-        Calendar calendar = Calendar.getInstance();
-        calendar.set(year,month,1);
-        setMonth(calendar);
+    /**
+     * @return Height of the month at the pager position, clamped to the range of months
+     */
+    private int getHeightOfPosition(int position){
+        position = Math.max(0, Math.min(position, numberOfMonthsBefore + numberOfMonthsAfter));
+        return getRowsForMonth(getMonthIndex(position)) * rowHeight;
     }
 
-    public void setMonth(Calendar calendar){
-        int monthsApart = (today.get(Calendar.YEAR) - calendar.get(Calendar.YEAR)) * 12;
-        monthsApart +=  (today.get(Calendar.MONTH) - calendar.get(Calendar.MONTH));
-        setCurrentItem(monthsApart+numberOfMonthsBefore,false);
+    private void setVisibleHeight(int visibleHeight){
+        if(visibleHeight==this.visibleHeight) return;
+        this.visibleHeight = visibleHeight;
+        // Only redraws, the clip is applied in dispatchDraw
+        invalidate();
+        if(visibleHeightListener!=null) visibleHeightListener.onVisibleHeightChanged(visibleHeight);
     }
 
-    public void setDaySelected(Calendar calendar){
-        setMonth(calendar);
-        calendarViewAdapter.setDaySelected(calendar);
+    long createdAt;
+    long timeToFirstDraw = -1;
+    private OnFirstDrawListener firstDrawListener;
+
+    public static interface OnFirstDrawListener{
+        /**
+         * @param timeToFirstDraw Milliseconds from construction until the calendar first drew
+         */
+        public void onFirstDraw(long timeToFirstDraw);
     }
 
-    public Calendar getSelectedDay(){
-        return selectedDay;
+    public void setOnFirstDrawListener(OnFirstDrawListener listener){
+        firstDrawListener = listener;
     }
 
-    private Calendar getCurrentCalendarMonth(int position){
-        Calendar currentCalendar = Calendar.getInstance();
-        currentCalendar.set(
-                today.get(Calendar.YEAR),
-                today.get(Calendar.MONTH),
-                1
-        );
-        currentCalendar.add(Calendar.MONTH,position-numberOfMonthsBefore);
-        return currentCalendar;
+    /**
+     * @return Milliseconds from construction until the calendar first drew, -1 if it has not
+     */
+    public long getTimeToFirstDraw(){
+        return timeToFirstDraw;
     }
 
-    public int getIntrinsicHeight() {
-        return intrinsicHeight;
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        if(isContentHeight() && visibleHeight>=0 && visibleHeight<getHeight()){
+            int saveCount = canvas.save();
+            canvas.clipRect(getScrollX(), 0, getScrollX() + getWidth(), visibleHeight);
+            super.dispatchDraw(canvas);
+            canvas.restoreToCount(saveCount);
+        }else{
+            super.dispatchDraw(canvas);
+        }
+        if(timeToFirstDraw<0){
+            timeToFirstDraw = SystemClock.uptimeMillis() - createdAt;
+            if(firstDrawListener!=null) firstDrawListener.onFirstDraw(timeToFirstDraw);
+        }
     }
 
-    public static interface CalendarViewListener{
-        public void onDaySelected(Calendar calendar);
-        public void onMonthSelected(Calendar calendar);
+    private WarmUpHandler warmUpHandler;
+
+    /**
+     * Builds the pages for the current month and its neighbours while the main thread is idle,
+     * one page per idle pass, and keeps them in the page pool already bound to their month.
+     * Call it when the calendar is created but not shown yet, for example in a hidden tab, so
+     * showing it does not have to inflate pages. Does nothing once the pager has its pages.
+     */
+    public void warmUp(){
+        if(warmUpHandler!=null) return;
+        warmUpHandler = new WarmUpHandler();
+        Looper.myQueue().addIdleHandler(warmUpHandler);
     }
 
-    private class CalendarViewAdapter extends PagerAdapter{
+    private class WarmUpHandler implements MessageQueue.IdleHandler{
 
-        CalendarMonthView calendarMonthView;
+        int prepared = 0;
 
         @Override
-        public int getCount() {
-            return numberOfMonthsBefore+1+numberOfMonthsAfter;
+        public boolean queueIdle() {
+            int pages = getOffscreenPageLimit()*2 + 1;
+            // Once the pager has laid out its pages there is nothing left to prepare
+            if(prepared<pages && getChildCount()==0){
+                // Current month first, then alternating after and before it
+                int offset = ((prepared+1)/2) * (prepared%2==1 ? 1 : -1);
+                pagePool.prepare(getMonthIndex(getCurrentItem()) + offset);
+                prepared++;
+                if(prepared<pages) return true;
+            }
+            warmUpHandler = null;
+            return false;
         }
+    }
 
-        @Override
-        public boolean isViewFromObject(View view, Object object) {
-            return view == object;
+    boolean snapshotPaging;
+    private SnapshotPreparer snapshotPreparer;
+
+    /**
+     * While a swipe is in progress, draws the month pages from cached snapshots, hardware
+     * layers or drawing caches before Honeycomb, instead of their view hierarchies. The live
+     * pages come back once the pager settles. While idle, the pages the next swipe will need
+     * are bound and laid out ahead of time, and the neighbours' snapshots are built, so a
+     * swipe does no bind or layout work per frame.
+     */
+    public void setSnapshotPaging(boolean enabled){
+        snapshotPaging = enabled;
+        if(!enabled) setPagesSnapshotted(false);
+        else prepareSnapshots();
+    }
+
+    private void setPagesSnapshotted(boolean snapshotted){
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB){
+            // Neighbours may hold layers built ahead of time, so every child is checked
+            for(int i=0;i<getChildCount();i++) setSnapshotLayer(getChildAt(i), snapshotted);
+        }else if(snapshotted!=isChildrenDrawnWithCacheEnabled()){
+            setChildrenDrawingCacheEnabled(snapshotted);
+            setChildrenDrawnWithCacheEnabled(snapshotted);
         }
+    }
 
-        int lastPosition = 0;
-        Calendar defaultDay;
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static void setSnapshotLayer(View page, boolean snapshotted){
+        // Falls back to a software layer when not hardware accelerated
+        int layerType = snapshotted ? LAYER_TYPE_HARDWARE : LAYER_TYPE_NONE;
+        if(page.getLayerType()!=layerType) page.setLayerType(layerType, null);
+    }
 
-        @Override
-        public Object instantiateItem(ViewGroup container, int position){
+    private void prepareSnapshots(){
+        if(snapshotPreparer!=null || !snapshotPaging || displayMode!=DISPLAY_MODE.MONTH) return;
+        snapshotPreparer = new SnapshotPreparer();
+        Looper.myQueue().addIdleHandler(snapshotPreparer);
+    }
 
-            calendarMonthView = new CalendarMonthView(getContext());
-            lastPosition = position;
-            calendarMonthView.setCalendarDate(getCurrentCalendarMonth(position));
-            if(defaultDay!=null && defaultDay.get(Calendar.MONTH)==position){
-                calendarMonthView.setDaySelected(defaultDay);
-                defaultDay = null; // after we found it make it no longer usable in future
+    /**
+     * Gets the next swipe ready one step per idle pass: binds and lays out the pages the
+     * pager will instantiate on either side, then builds the snapshots of the neighbours.
+     */
+    private class SnapshotPreparer implements MessageQueue.IdleHandler{
+
+        int step = 0;
+
+        @Override
+        public boolean queueIdle() {
+            // A swipe started or the mode changed, the next settle starts over
+            if(scrollState!=SCROLL_STATE_IDLE || !snapshotPaging || displayMode!=DISPLAY_MODE.MONTH || getWidth()==0){
+                snapshotPreparer = null;
+                return false;
             }
+            int current = getCurrentItem();
+            int ahead = getOffscreenPageLimit() + 1;
+            switch(step++){
+                case 0:
+                    prepareLaidOut(current + ahead);
+                    return true;
+                case 1:
+                    prepareLaidOut(current - ahead);
+                    return true;
+                default:
+                    if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) buildNeighbourLayers();
+                    snapshotPreparer = null;
+                    return false;
+            }
+        }
 
-            container.addView(calendarMonthView);
-            return calendarMonthView;
+        private void prepareLaidOut(int position){
+            if(position<0 || position>=calendarViewAdapter.getCount()) return;
+            MonthPage page = pagePool.prepareAhead(getMonthIndex(position));
+            if(page==null) return;
+            View view = (View) page;
+            int width = getWidth() - getPaddingLeft() - getPaddingRight();
+            int height = getHeight() - getPaddingTop() - getPaddingBottom();
+            if(view.isLayoutRequested() || view.getWidth()!=width || view.getHeight()!=height){
+                view.measure(
+                        MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                        MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY)
+                );
+                view.layout(0, 0, width, height);
+            }
         }
 
-        @Override
-        public void destroyItem(ViewGroup container, int position, Object object){
-            container.removeView((View) object);
+        @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+        private void buildNeighbourLayers(){
+            MonthPage current = calendarViewAdapter.livePages.get(getMonthIndex(getCurrentItem()));
+            for(int i=0;i<getChildCount();i++){
+                View child = getChildAt(i);
+                if(child==current || child.getWidth()==0) continue;
+                setSnapshotLayer(child, true);
+                child.buildLayer();
+            }
         }
+    }
 
-        public void setDaySelected(Calendar calendar) {
-            defaultDay = calendar;
-            notifyDataSetChanged();
+    private MemoryTrimmer memoryTrimmer;
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        // Picks up what onDetachedFromWindow stopped, the refresher may have been added while
+        // never attached
+        if(snapshotRefresher!=null){
+            Looper.myQueue().removeIdleHandler(snapshotRefresher);
+            Looper.myQueue().addIdleHandler(snapshotRefresher);
+        }
+        bindScheduler.schedule();
+        prepareSnapshots();
+        requestMissingEvents();
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH && memoryTrimmer==null){
+            memoryTrimmer = new MemoryTrimmer();
+            getContext().getApplicationContext().registerComponentCallbacks(memoryTrimmer);
         }
     }
 
-    private class ChangeListener implements OnPageChangeListener{
+    /**
+     * Stops everything queued for later so a detached calendar is not kept alive by the main
+     * thread: idle passes, event loads and the trim callbacks. A pending selection change is
+     * reported now instead.
+     */
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        MessageQueue queue = Looper.myQueue();
+        if(warmUpHandler!=null){
+            queue.removeIdleHandler(warmUpHandler);
+            warmUpHandler = null;
+        }
+        if(snapshotPreparer!=null){
+            queue.removeIdleHandler(snapshotPreparer);
+            snapshotPreparer = null;
+        }
+        // Its months are kept, it is added again when attached
+        if(snapshotRefresher!=null) queue.removeIdleHandler(snapshotRefresher);
+        bindScheduler.cancel();
+        if(selectionFlushPosted){
+            removeCallbacks(selectionFlush);
+            flushSelection();
+        }
+        if(eventLoader!=null) eventLoader.cancel(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        flushSnapshot();
+        if(memoryTrimmer!=null){
+            getContext().getApplicationContext().unregisterComponentCallbacks(memoryTrimmer);
+            memoryTrimmer = null;
+        }
+    }
 
-        @Override
-        public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+    /**
+     * Asks again for the events of the months and weeks shown whose loads were cancelled.
+     */
+    private void requestMissingEvents(){
+        if(eventLoader==null) return;
+        SparseArray<MonthPage> livePages = calendarViewAdapter.livePages;
+        for(int i=0;i<livePages.size();i++){
+            // Placeholders ask once they are completed
+            if(!bindScheduler.placeholders.contains(livePages.valueAt(i))) eventLoader.prefetch(livePages.keyAt(i));
+        }
+        if(calendarWeekAdapter==null) return;
+        SparseArray<CalendarWeekView> liveWeeks = calendarWeekAdapter.liveWeeks;
+        for(int i=0;i<liveWeeks.size();i++){
+            int firstEpochDay = liveWeeks.valueAt(i).firstEpochDay;
+            eventLoader.prefetch(DayMath.monthIndexOfEpochDay(firstEpochDay));
+            eventLoader.prefetch(DayMath.monthIndexOfEpochDay(firstEpochDay + 6));
+        }
+    }
 
+    /**
+     * Drops what can be rebuilt, more of it the higher the level, one of the
+     * ComponentCallbacks2 TRIM_MEMORY levels. From Ice Cream Sandwich on this is called on its
+     * own while the calendar is attached. Before it, call it from the activity's onLowMemory
+     * with TRIM_MEMORY_COMPLETE.
+     */
+    public void trimMemory(int level){
+        boolean hidden = level>=ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN;
+        boolean critical = level==ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL
+                || level>=ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+        if(level>=ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW){
+            // Pages taken down and all but the tiles of the year pages attached
+            if(calendarWeekAdapter!=null) calendarWeekAdapter.clearRecycled();
+            if(calendarYearAdapter!=null) calendarYearAdapter.clearRecycled();
+            yearTileCache.trimToMinimum();
+        }
+        if(hidden || critical){
+            pagePool.clear();
+            // Nothing is shown, tiles are rendered again when it is
+            if(hidden) invalidateYearTiles(Integer.MIN_VALUE, Integer.MAX_VALUE);
         }
+        if(critical){
+            // Pages keep their own counts, other months are loaded again
+            eventCache.clear();
+            flushSnapshot();
+        }
+        // Last, as the tiles dropped above went to the pool
+        if(level>=ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) BitmapPool.get().clear();
+    }
 
-        int lastPage = 0;
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private class MemoryTrimmer implements ComponentCallbacks2{
 
         @Override
-        public void onPageSelected(int position) {
-            Calendar monthSelected = getCurrentCalendarMonth(position);
-            intrinsicHeight = getRowsForMonth(monthSelected,showMonthTitle,showDaysOfWeekRow) * rowHeight;
-            if(calendarViewListener!=null){
-                calendarViewListener.onMonthSelected(monthSelected);
-            }
+        public void onTrimMemory(int level) {
+            trimMemory(level);
         }
 
         @Override
-        public void onPageScrollStateChanged(int state) {
+        public void onLowMemory() {
+            trimMemory(TRIM_MEMORY_COMPLETE);
+        }
 
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
         }
     }
 
-    public class CalendarMonthView extends LinearLayout{
+    /**
+     * What the calendar holds on to besides the views shown, see {@link #getMemoryFootprint()}.
+     */
+    public static class MemoryFootprint{
+        // Rendered mini-months of the year pages
+        public int yearTileBytes;
+        // Bitmaps kept to be reused, shared by every calendar
+        public int bitmapPoolBytes;
+        // Snapshots of the pages shown in hardware layers or drawing caches, from their size
+        public int layerBytes;
+        // Event counts of the cached months
+        public int eventCacheBytes;
+        // Mapped event snapshot file, backed by the file rather than the heap
+        public int eventSnapshotBytes;
+        // Month, week and year pages taken down and kept to be reused
+        public int pooledPages;
+
+        /**
+         * @return Bytes of bitmaps and cached data on the heap, pooled pages not included
+         */
+        public int getTotalBytes(){
+            return yearTileBytes + bitmapPoolBytes + layerBytes + eventCacheBytes;
+        }
+    }
 
-        TextView monthTitleRow;
-        View daysOfWeekRow;
-        GridView gridView;
-        Calendar calendarOfMonth;
-        CalendarDayView lastSelectedDayView;
-        int daysBeforeFirstDay;
+    public MemoryFootprint getMemoryFootprint(){
+        MemoryFootprint footprint = new MemoryFootprint();
+        footprint.yearTileBytes = yearTileCache.sizeBytes();
+        footprint.bitmapPoolBytes = BitmapPool.get().sizeBytes();
+        footprint.layerBytes = getLayerBytes();
+        footprint.eventCacheBytes = eventCache.sizeBytes();
+        footprint.eventSnapshotBytes = eventSnapshot!=null ? eventSnapshot.sizeBytes() : 0;
+        footprint.pooledPages = pagePool.size()
+                + (calendarWeekAdapter!=null ? calendarWeekAdapter.recycledCount() : 0)
+                + (calendarYearAdapter!=null ? calendarYearAdapter.recycledCount() : 0);
+        return footprint;
+    }
 
-        public CalendarMonthView(Context context) {
-            super(context);
-            LayoutInflater.from(context).inflate(R.layout.view_calendar_month, this, true);
-            gridView = (GridView) findViewById(R.id.calendar_month_gridview);
-            monthTitleRow = (TextView) findViewById(R.id.month_title_row);
-            daysOfWeekRow = findViewById(R.id.days_of_week_row);
+    private int getLayerBytes(){
+        int bytes = 0;
+        boolean drawingCaches = Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB && isChildrenDrawnWithCacheEnabled();
+        for(int i=0;i<getChildCount();i++){
+            View child = getChildAt(i);
+            boolean layer = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB && hasLayer(child);
+            if(drawingCaches || layer) bytes += child.getWidth() * child.getHeight() * 4;
         }
+        return bytes;
+    }
 
-        public void setCalendarDate(Calendar calendar){
-            calendarOfMonth = calendar;
-            gridView.setAdapter(new CalendarMonthAdapter());
-            daysBeforeFirstDay = getDaysBeforeFirstDay(calendarOfMonth);
-            monthTitleRow.setText(getTitleForMonth(calendarOfMonth,includeYearInTitle));
-            monthTitleRow.setVisibility(showMonthTitle ? VISIBLE : GONE);
-            daysOfWeekRow.setVisibility(showDaysOfWeekRow ? VISIBLE : GONE);
-        }
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static boolean hasLayer(View view){
+        return view.getLayerType()!=LAYER_TYPE_NONE;
+    }
 
-        public void setDaySelected(Calendar calendar) {
-            CalendarMonthAdapter calendarMonthAdapter = (CalendarMonthAdapter) gridView.getAdapter();
-            calendarMonthAdapter.setDaySelected(calendar);
+    CalendarLocale calendarLocale = getCalendarLocale(Locale.getDefault());
+
+    /**
+     * Sets the locale of the month titles, the weekday labels and the first day of week.
+     * Defaults to the default locale. Pages already created are rebuilt.
+     */
+    public void setLocale(Locale locale){
+        CalendarLocale newLocale = getCalendarLocale(locale);
+        if(newLocale==calendarLocale) return;
+        int monthIndex = getCurrentMonthIndex();
+        calendarLocale = newLocale;
+        yearTileCache.clear();
+        pagePool.clear();
+        calendarViewAdapter = new CalendarViewAdapter();
+        calendarWeekAdapter = null;
+        calendarYearAdapter = null;
+        showDisplayModeAdapter();
+        setMonthIndex(monthIndex);
+        requestLayout();
+    }
+
+    public Locale getLocale(){
+        return calendarLocale.locale;
+    }
+
+    private static CalendarLocale getCalendarLocale(Locale locale){
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2){
+            return CalendarLocale.get(locale, DateFormat.getBestDateTimePattern(locale, "MMMMyyyy"));
         }
+        return CalendarLocale.get(locale);
+    }
 
-        class CalendarMonthAdapter extends BaseAdapter{
+    /**
+     * Sets the weekday labels of a days of week row inflated from the layouts.
+     */
+    void bindDaysOfWeekRow(View daysOfWeekRow){
+        ViewGroup row = (ViewGroup) daysOfWeekRow;
+        for(int i=0;i<7;i++) ((TextView) row.getChildAt(i)).setText(calendarLocale.weekdayLabels[i]);
+    }
 
-            @Override
-            public int getCount() {
-                return daysBeforeFirstDay + calendarOfMonth.getActualMaximum(Calendar.DAY_OF_MONTH);
-            }
+    public void setPrimaryColor(int color){
+        primaryColor = color;
+        invalidateYearTiles(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
 
-            @Override
-            public Object getItem(int i) {
-                return null;
-            }
+    /**
+     * Changes the range of months. Pages whose month is still in range are kept and moved to
+     * their new position rather than rebuilt.
+     */
+    public void setNumberOfMonthsBefore(int i){
+        numberOfMonthsBefore = i;
+        getAdapter().notifyDataSetChanged();
+        setDaySelected(today);
+    }
+
+    public void setNumberOfMonthsAfter(int i){
+        numberOfMonthsAfter = i;
+        getAdapter().notifyDataSetChanged();
+        setDaySelected(today);
+    }
+
+    CalendarMetricsListener metricsListener;
+
+    /**
+     * Reports timings of the widget's main work, in nanoseconds. Every method is called on the
+     * UI thread except {@link #onEventLookup(long, int)} for asynchronous loads.
+     */
+    public static interface CalendarMetricsListener{
+        // recycled is true when the page came from the page pool instead of being created
+        public void onPageInstantiated(long nanos, boolean recycled);
+        public void onMonthBound(long nanos);
+        // recycled is true when the grid handed back a cell instead of one being created
+        public void onCellBound(long nanos, boolean recycled);
+        public void onEventLookup(long nanos, int dayCount);
+        public void onCircleDrawn(long nanos);
+    }
 
+    /**
+     * Sets a listener for performance metrics. Without one nothing is measured, so it costs a
+     * null check per measured call and can be left in release builds.
+     */
+    public void setMetricsListener(CalendarMetricsListener listener){
+        metricsListener = listener;
+        circleDrawListener = listener!=null ? new AdaptableCircleView.OnDrawListener() {
             @Override
-            public long getItemId(int i) {
-                return 0;
+            public void onDraw(long nanos) {
+                CalendarMetricsListener metrics = metricsListener;
+                if(metrics!=null) metrics.onCircleDrawn(nanos);
             }
+        } : null;
+    }
 
-            int defaultDay = 1;
+    AdaptableCircleView.OnDrawListener circleDrawListener;
 
-            @Override
-            public View getView(int i, View view, ViewGroup viewGroup) {
-                CalendarDayView calendarDayView;
-                if(view!=null){
-                    calendarDayView = (CalendarDayView) view;
-                }else{
-                    calendarDayView = new CalendarDayView(getContext());
-                }
+    int cellBindCount;
 
-                int dayOfMonth = i+1-daysBeforeFirstDay;
+    /**
+     * @return Number of day cells bound or repainted since the last
+     * {@link #resetCellBindCount()}, to check how much work an operation caused
+     */
+    public int getCellBindCount(){
+        return cellBindCount;
+    }
 
-                calendarDayView.setDay(dayOfMonth);
-                if(dayOfMonth==defaultDay){
-                    if(lastSelectedDayView!=null) lastSelectedDayView.setDeselected();
-                    lastSelectedDayView = calendarDayView;
-                    calendarDayView.setSelected();
-                }else calendarDayView.setDeselected();
+    public void resetCellBindCount(){
+        cellBindCount = 0;
+    }
 
-                return calendarDayView;
-            }
+    /**
+     * Switches how month pages are built. Pages already created are rebuilt.
+     */
+    public void setRenderMode(RENDER_MODE mode){
+        if(mode==renderMode) return;
+        renderMode = mode;
+        pagePool.clear();
+        calendarViewAdapter = new CalendarViewAdapter();
+        // The year pages are left alone, the new adapter is shown when going back to months
+        if(displayMode!=DISPLAY_MODE.MONTH) return;
+        int currentItem = getCurrentItem();
+        setAdapter(calendarViewAdapter);
+        setCurrentItem(currentItem, false);
+    }
 
-            public void setDaySelected(Calendar calendar) {
-                defaultDay = calendar!=null ? calendar.get(Calendar.DAY_OF_MONTH) : 1;
-                notifyDataSetChanged();
-            }
+    /**
+     * Switches between paging months, years and weeks. The month shown, or the month of the
+     * year or week shown, is kept.
+     */
+    public void setDisplayMode(DISPLAY_MODE mode){
+        if(mode==displayMode) return;
+        int monthIndex = getCurrentMonthIndex();
+        displayMode = mode;
+        showDisplayModeAdapter();
+        setMonthIndex(monthIndex);
+        requestLayout();
+    }
 
+    private void showDisplayModeAdapter(){
+        if(displayMode==DISPLAY_MODE.YEAR){
+            if(calendarYearAdapter==null) calendarYearAdapter = new CalendarYearAdapter();
+            setAdapter(calendarYearAdapter);
+        }else if(displayMode==DISPLAY_MODE.WEEK){
+            if(calendarWeekAdapter==null) calendarWeekAdapter = new CalendarWeekAdapter();
+            setAdapter(calendarWeekAdapter);
+        }else{
+            setAdapter(calendarViewAdapter);
         }
+    }
 
-        class CalendarDayView extends FrameLayout implements OnClickListener{
+    public DISPLAY_MODE getDisplayMode(){
+        return displayMode;
+    }
 
-            TextView dayText;
-            AdaptableCircleView dayCircle;
-            int dayOfMonth = -1;
+    /**
+     * @return Month index of the month shown, or of the first month of the year shown
+     */
+    private int getCurrentMonthIndex(){
+        if(displayMode==DISPLAY_MODE.YEAR) return DayMath.monthIndex(getYear(getCurrentItem()), Calendar.JANUARY);
+        // The month holding most of the week, the one of its Wednesday
+        if(displayMode==DISPLAY_MODE.WEEK) return DayMath.monthIndexOfEpochDay(DayMath.firstEpochDayOfWeek(getWeekIndex(getCurrentItem()), calendarLocale.firstDayOfWeek) + 3);
+        return getMonthIndex(getCurrentItem());
+    }
 
-            public CalendarDayView(Context context) {
-                super(context);
-                LayoutInflater.from(context).inflate(R.layout.view_calendar_day, this, true);
-                dayText = (TextView) findViewById(R.id.calendar_day_text);
-                dayCircle = (AdaptableCircleView) findViewById(R.id.calendar_day_circle);
-                setDeselected();
-                setOnClickListener(this);
-            }
+    static final int DEFAULT_YEAR_TILE_CACHE_BYTES = 8*1024*1024;
 
-            public void setDay(int day){
-                if(day>0) {
-                    dayOfMonth = day;
-                    dayText.setText(dayOfMonth + "");
-                    setClickable(true);
-                }else{
-                    setVisibility(INVISIBLE);
-                    dayText.setText("");
-                    setClickable(false);
-                }
-            }
+    MonthTileCache yearTileCache = new MonthTileCache(DEFAULT_YEAR_TILE_CACHE_BYTES);
 
-            public Calendar getDay(){
-                Calendar calendar = Calendar.getInstance();
-                calendar.set(
-                        calendarOfMonth.get(Calendar.YEAR),
-                        calendarOfMonth.get(Calendar.MONTH),
-                        dayOfMonth,0,0,0
-                );
-                calendar.set(Calendar.MILLISECOND, 0);
-                return calendar;
-            }
+    /**
+     * Sets the memory budget of the rendered mini-months of {@link DISPLAY_MODE#YEAR}. The
+     * tiles of every year page attached to the pager are always kept whatever the budget.
+     */
+    public void setYearTileCacheSize(int bytes){
+        yearTileCache.setMaxBytes(bytes);
+    }
 
+    public int getYearTileCacheSize(){
+        return yearTileCache.getMaxBytes();
+    }
 
-            public void setAsToday(){
-                dayText.setTextColor(Color.WHITE);
-                dayCircle.setBackgroundColor(primaryColor);
-                dayCircle.setPercentage(0.0f);
-            }
+    public int getYearTileCacheHits(){
+        return yearTileCache.getHits();
+    }
 
-            public void setAsHavingEvent() {
-                dayText.setTextColor(Color.BLACK);
-                dayCircle.setBackgroundColor(Color.LTGRAY);
-                dayCircle.setInsetPadding(1);
-                dayCircle.setForegroundColor(Color.WHITE);
-                dayCircle.setPercentage(1.0f);
-            }
+    public int getYearTileCacheMisses(){
+        return yearTileCache.getMisses();
+    }
 
-            public void setAsNotHavingEvent(){
-                dayText.setTextColor(Color.BLACK);
-                dayCircle.setBackgroundColor(Color.WHITE);
-            }
+    /**
+     * Drops the mini-months of the months from first to last, both included, and redraws
+     * the year pages shown.
+     */
+    private void invalidateYearTiles(int firstMonthIndex, int lastMonthIndex){
+        yearTileCache.removeRange(firstMonthIndex, lastMonthIndex);
+        if(displayMode!=DISPLAY_MODE.YEAR) return;
+        for(int i=0;i<getChildCount();i++) getChildAt(i).invalidate();
+    }
 
-            public void setSelected(){
-                if(sameDay(getDay(), today)) setAsToday();
-                else {
-                    dayText.setTextColor(Color.BLACK);
-                    dayCircle.setBackgroundColor(Color.LTGRAY);
-                    dayCircle.setPercentage(0.0f);
-                }
-            }
+    public void setDecorationMode(DECORATION_MODE mode){
+        decorationMode = mode;
+        refreshDecorations();
+    }
 
-            public void setDeselected(){
-                Calendar day = getDay();
-                // If this day is today, mark it as so
-                if(sameDay(day, today)) setAsToday();
-                    // If this day has event, mark it as so
-                else if(hasEvent(day)) setAsHavingEvent();
-                    // If this day has event, mark it as so
-                else setAsNotHavingEvent();
-            }
+    /**
+     * Sets the heatmap scale, days with one event get the low color and days with maxCount or
+     * more the high color.
+     */
+    public void setHeatmapColors(int lowColor, int highColor, int maxCount){
+        heatmapLowColor = lowColor;
+        heatmapHighColor = highColor;
+        heatmapMaxCount = Math.max(1, maxCount);
+        refreshDecorations();
+    }
 
-            @Override
-            public void onClick(View view) {
-                if(lastSelectedDayView!=null) lastSelectedDayView.setDeselected();
-                lastSelectedDayView = this;
-                setSelected();
+    /**
+     * Sets the categories shown by {@link DECORATION_MODE#CATEGORY_RINGS}. Category counts are
+     * loaded once per month bind.
+     * @param colors Color of each category, its length being the number of categories
+     */
+    public void setEventCategories(int[] colors, EventCategoryIndicator indicator){
+        categoryColors = colors;
+        categoryIndicator = indicator;
+        refreshDecorations();
+    }
 
-                if(calendarViewListener!=null){
-                    calendarViewListener.onDaySelected(selectedDay=getDay());
-                }
-            }
+    public static interface EventCategoryIndicator{
+        /**
+         * Fills in the number of events per category of each day of [firstDay, firstDay+dayCount).
+         * @param categoryCount Number of categories
+         * @param counts Zeroed, packed day by day: counts[day*categoryCount + category]
+         */
+        public void getCategoryCounts(Calendar firstDay, int dayCount, int categoryCount, int[] counts);
+    }
 
+    private void refreshDecorations(){
+        invalidateYearTiles(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        if(calendarWeekAdapter!=null){
+            SparseArray<CalendarWeekView> liveWeeks = calendarWeekAdapter.liveWeeks;
+            for(int i=0;i<liveWeeks.size();i++) liveWeeks.valueAt(i).setWeekIndex(liveWeeks.keyAt(i));
         }
+        if(calendarViewAdapter==null) return;
+        SparseArray<MonthPage> livePages = calendarViewAdapter.livePages;
+        for(int i=0;i<livePages.size();i++) livePages.valueAt(i).refreshDecorations();
+        for(MonthPage page : pagePool.pages) page.refreshDecorations();
+    }
 
+    /**
+     * @return Heatmap color of the count, 0 when there are no events
+     */
+    int heatmapColor(int count){
+        if(count<=0) return 0;
+        float fraction = heatmapMaxCount>1 ? Math.min(count-1, heatmapMaxCount-1) / (float) (heatmapMaxCount-1) : 1f;
+        return blendColor(heatmapLowColor, heatmapHighColor, fraction);
     }
 
-    EventIndicator eventIndicator;
+    static int blendColor(int from, int to, float fraction){
+        int a = (int) (Color.alpha(from) + (Color.alpha(to) - Color.alpha(from)) * fraction);
+        int r = (int) (Color.red(from) + (Color.red(to) - Color.red(from)) * fraction);
+        int g = (int) (Color.green(from) + (Color.green(to) - Color.green(from)) * fraction);
+        int b = (int) (Color.blue(from) + (Color.blue(to) - Color.blue(from)) * fraction);
+        return Color.argb(a, r, g, b);
+    }
 
-    public void setEventIndicator(EventIndicator indicator){
-        eventIndicator = indicator;
+    int categoryCount(){
+        return categoryColors!=null && categoryIndicator!=null ? categoryColors.length : 0;
     }
 
-    public static interface EventIndicator{
-        public boolean hasEvent(Calendar day);
+    /**
+     * Loads the month's per category counts when category rings are shown.
+     * @return The counts array to use, reallocated only when the category count grew
+     */
+    int[] loadCategoryCounts(int monthIndex, int[] counts){
+        int categories = categoryCount();
+        if(decorationMode!=DECORATION_MODE.CATEGORY_RINGS || categories==0) return counts;
+        if(counts==null || counts.length<31*categories) counts = new int[31*categories];
+        else Arrays.fill(counts, 0);
+        categoryIndicator.getCategoryCounts(
+                DayMath.monthToCalendar(monthIndex),
+                MonthLayout.get(monthIndex).daysInMonth,
+                categories,
+                counts
+        );
+        return counts;
     }
 
-    private boolean hasEvent(Calendar day){
-        return eventIndicator!=null ? eventIndicator.hasEvent(day) : false;
+    /**
+     * Sets how many month pages taken down by the pager are kept to be reused. Defaults to 3.
+     */
+    public void setPagePoolSize(int size){
+        pagePool.setMaxSize(size);
     }
 
-    public static boolean sameDay(Calendar first,Calendar second){
-        return first.get(Calendar.DAY_OF_YEAR)==second.get(Calendar.DAY_OF_YEAR)
-                && first.get(Calendar.YEAR)==second.get(Calendar.YEAR);
+    public int getPagePoolSize(){
+        return pagePool.maxSize;
     }
 
-    public static int getRowsForMonth(Calendar month,boolean hasTitle,boolean hasDaysOfWeek){
-        int daysInMonth = month.getActualMaximum(Calendar.DAY_OF_MONTH);
-        int additionalRows = (hasTitle ? 1 : 0) + (hasDaysOfWeek ? 1 : 0);
-        return (int) Math.ceil( ((daysInMonth+getDaysBeforeFirstDay(month)) / 7.0) + additionalRows);
+    /**
+     * @return Number of pages shown by reusing a pooled page
+     */
+    public int getPagePoolHits(){
+        return pagePool.hits;
     }
 
-    private static int getDaysBeforeFirstDay(Calendar month){
-        Calendar cal=Calendar.getInstance();
-        cal.set(
-                month.get(Calendar.YEAR),
-                month.get(Calendar.MONTH),
-                1
-        );
-        return cal.get(Calendar.DAY_OF_WEEK) - 1;
+    /**
+     * @return Number of pages that had to be created because the pool was empty
+     */
+    public int getPagePoolMisses(){
+        return pagePool.misses;
+    }
+
+    public void setShowMonthTitle(boolean show){ showMonthTitle = show; }
+
+    public void setShowDaysOfWeekRow(boolean show){ showDaysOfWeekRow = show; }
+
+    public void setIncludeYearInTitle(boolean include){ includeYearInTitle = include; }
+
+    private CalendarViewListener calendarViewListener;
+
+    public void setCalendarViewListener(CalendarViewListener listener){
+        calendarViewListener = listener;
+    }
+
+    SELECTION_MODE selectionMode = SELECTION_MODE.SINGLE;
+    // Selected days in MULTIPLE and RANGE modes
+    final DaySet selection = new DaySet();
+    // First day of a range waiting for its last day to be tapped
+    int rangeAnchor = NO_DAY;
+    private SelectionListener selectionListener;
+    private int addedSinceFlush;
+    private int removedSinceFlush;
+    private boolean selectionFlushPosted;
+
+    public enum SELECTION_MODE{
+        // One selected day, reported through CalendarViewListener
+        SINGLE,
+        // Tapping a day adds it to or removes it from the selection
+        MULTIPLE,
+        // A first tap starts a range, a second tap, on any month, ends it
+        RANGE
+    }
+
+    public static interface SelectionListener{
+        /**
+         * Called once for all the changes made to the selection since the last call, however
+         * many days they covered.
+         */
+        public void onSelectionChanged(int addedDays, int removedDays);
+    }
+
+    /**
+     * Switches how tapping selects days, clearing the selection.
+     */
+    public void setSelectionMode(SELECTION_MODE mode){
+        if(mode==selectionMode) return;
+        clearSelection();
+        selectionMode = mode;
+        flushSelection();
+        // Every day's look depends on the mode
+        refreshDecorations();
+        if(mode==SELECTION_MODE.SINGLE && selectedDay!=null) calendarViewAdapter.setDaySelected(DayMath.epochDay(selectedDay));
+    }
+
+    public SELECTION_MODE getSelectionMode(){
+        return selectionMode;
+    }
+
+    public void setSelectionListener(SelectionListener listener){
+        selectionListener = listener;
+    }
+
+    /**
+     * Adds every day from first to last, both included, to the selection.
+     */
+    public void selectRange(Calendar first, Calendar last){
+        addedSinceFlush += selection.addRange(DayMath.epochDay(first), DayMath.epochDay(last));
+        postSelectionFlush();
+    }
+
+    public void deselectRange(Calendar first, Calendar last){
+        removedSinceFlush += selection.removeRange(DayMath.epochDay(first), DayMath.epochDay(last));
+        postSelectionFlush();
+    }
+
+    public void clearSelection(){
+        removedSinceFlush += selection.size();
+        selection.clear();
+        rangeAnchor = NO_DAY;
+        postSelectionFlush();
+    }
+
+    public boolean isDaySelected(Calendar day){
+        return selection.contains(DayMath.epochDay(day));
+    }
+
+    public int getSelectedDayCount(){
+        return selection.size();
+    }
+
+    /**
+     * @return A new Calendar for every selected day, in order
+     */
+    public List<Calendar> getSelectedDays(){
+        int[] epochDays = selection.toEpochDays();
+        List<Calendar> days = new ArrayList<Calendar>(epochDays.length);
+        for(int epochDay : epochDays) days.add(DayMath.toCalendar(epochDay));
+        return days;
+    }
+
+    /**
+     * Handles a tap on a day in MULTIPLE or RANGE mode.
+     */
+    void onSelectionTap(int epochDay){
+        if(selectionMode==SELECTION_MODE.MULTIPLE){
+            if(selection.remove(epochDay)) removedSinceFlush++;
+            else if(selection.add(epochDay)) addedSinceFlush++;
+        }else if(rangeAnchor==NO_DAY){
+            removedSinceFlush += selection.size();
+            selection.clear();
+            if(selection.add(epochDay)) addedSinceFlush++;
+            rangeAnchor = epochDay;
+        }else{
+            addedSinceFlush += selection.addRange(Math.min(rangeAnchor, epochDay), Math.max(rangeAnchor, epochDay));
+            rangeAnchor = NO_DAY;
+        }
+        postSelectionFlush();
+    }
+
+    /**
+     * Coalesces every selection change until the next pass of the UI thread.
+     */
+    private void postSelectionFlush(){
+        if(selectionFlushPosted) return;
+        selectionFlushPosted = true;
+        post(selectionFlush);
+    }
+
+    private final Runnable selectionFlush = new Runnable() {
+        @Override
+        public void run() {
+            flushSelection();
+        }
+    };
+
+    /**
+     * Repaints the changed days of the pages shown and reports the changes in one call.
+     */
+    private void flushSelection(){
+        selectionFlushPosted = false;
+        if(calendarViewAdapter!=null){
+            SparseArray<MonthPage> livePages = calendarViewAdapter.livePages;
+            for(int i=0;i<livePages.size();i++) livePages.valueAt(i).setSelectionMask(getSelectionMask(livePages.keyAt(i)));
+        }
+        for(MonthPage page : pagePool.pages) page.setSelectionMask(getSelectionMask(page.getMonthIndex()));
+        if(calendarWeekAdapter!=null){
+            SparseArray<CalendarWeekView> liveWeeks = calendarWeekAdapter.liveWeeks;
+            for(int i=0;i<liveWeeks.size();i++) liveWeeks.valueAt(i).bindSelectionMask();
+        }
+        int added = addedSinceFlush;
+        int removed = removedSinceFlush;
+        addedSinceFlush = removedSinceFlush = 0;
+        if(selectionListener!=null && (added!=0 || removed!=0)) selectionListener.onSelectionChanged(added, removed);
+    }
+
+    /**
+     * @return Mask of the selected days of the month, always 0 in SINGLE mode
+     */
+    int getSelectionMask(int monthIndex){
+        return selectionMode!=SELECTION_MODE.SINGLE ? selection.getMonthMask(monthIndex) : 0;
+    }
+
+    public void setMonth(int year,int month){
+        setMonthIndex(DayMath.monthIndex(year, month));
+    }
+
+    public void setMonth(Calendar calendar){
+        setMonthIndex(DayMath.monthIndex(calendar));
+    }
+
+    private void setMonthIndex(int monthIndex){
+        if(displayMode==DISPLAY_MODE.YEAR) setCurrentItem(getYearPosition(DayMath.yearOfMonthIndex(monthIndex)),false);
+        else if(displayMode==DISPLAY_MODE.WEEK) setCurrentItem(getWeekPosition(DayMath.weekIndex(getWeekDayOfMonth(monthIndex), calendarLocale.firstDayOfWeek)),false);
+        else setCurrentItem(getPosition(monthIndex),false);
+    }
+
+    /**
+     * @return The selected day if it is in the month, otherwise the first day of the month
+     */
+    private int getWeekDayOfMonth(int monthIndex){
+        int selectedEpochDay = selectedDay!=null ? DayMath.epochDay(selectedDay) : NO_DAY;
+        if(selectedEpochDay!=NO_DAY && DayMath.monthIndexOfEpochDay(selectedEpochDay)==monthIndex) return selectedEpochDay;
+        return DayMath.firstEpochDayOfMonth(monthIndex);
+    }
+
+    public void setDaySelected(Calendar calendar){
+        if(displayMode==DISPLAY_MODE.WEEK){
+            int previous = selectedDay!=null ? DayMath.epochDay(selectedDay) : NO_DAY;
+            selectedDay = calendar;
+            calendarWeekAdapter.setSelectedDay(previous, DayMath.epochDay(calendar));
+            setCurrentItem(getWeekPosition(DayMath.weekIndex(DayMath.epochDay(calendar), calendarLocale.firstDayOfWeek)),false);
+        }else{
+            setMonth(calendar);
+        }
+        calendarViewAdapter.setDaySelected(DayMath.epochDay(calendar));
+    }
+
+    public Calendar getSelectedDay(){
+        return selectedDay;
+    }
+
+    /**
+     * @return Month index (see {@link DayMath}) of the month shown at the pager position
+     */
+    private int getMonthIndex(int position){
+        return todayMonthIndex + position - numberOfMonthsBefore;
+    }
+
+    private int getPosition(int monthIndex){
+        return monthIndex - todayMonthIndex + numberOfMonthsBefore;
+    }
+
+    /**
+     * @return Year shown at the pager position in {@link DISPLAY_MODE#YEAR}
+     */
+    private int getYear(int yearPosition){
+        return DayMath.yearOfMonthIndex(getMonthIndex(0)) + yearPosition;
+    }
+
+    private int getYearPosition(int year){
+        return year - DayMath.yearOfMonthIndex(getMonthIndex(0));
+    }
+
+    /**
+     * @return Week index (see {@link DayMath#weekIndex(int, int)}) shown at the pager position in
+     * {@link DISPLAY_MODE#WEEK}
+     */
+    private int getWeekIndex(int weekPosition){
+        return DayMath.weekIndex(DayMath.firstEpochDayOfMonth(getMonthIndex(0)), calendarLocale.firstDayOfWeek) + weekPosition;
+    }
+
+    private int getWeekPosition(int weekIndex){
+        return weekIndex - DayMath.weekIndex(DayMath.firstEpochDayOfMonth(getMonthIndex(0)), calendarLocale.firstDayOfWeek);
+    }
+
+    public int getIntrinsicHeight() {
+        return intrinsicHeight;
+    }
+
+    public static interface CalendarViewListener{
+        public void onDaySelected(Calendar calendar);
+        public void onMonthSelected(Calendar calendar);
+    }
+
+    /**
+     * A single month page, regardless of how it is rendered.
+     */
+    interface MonthPage{
+        // Month index the page is bound to, NO_DAY before the first bind
+        public int getMonthIndex();
+        // Whether the page is bound to the month in the current locale
+        public boolean isBoundTo(int monthIndex);
+        public void setMonthIndex(int monthIndex);
+        // Binds the month's days without events or categories, see bindDecorations
+        public void bindPlaceholder(int monthIndex);
+        // Loads the events and categories a placeholder left out, does nothing otherwise
+        public void bindDecorations();
+        public void setSelectedDay(int epochDay);
+        // Replaces the month's event counts, repainting only the days that look different
+        public void setEventCounts(int[] counts);
+        // Reloads category counts if needed and repaints every day's decoration
+        public void refreshDecorations();
+        // Replaces the mask of days selected in MULTIPLE or RANGE mode, repainting only changes
+        public void setSelectionMask(int mask);
+    }
+
+    private class CalendarViewAdapter extends PagerAdapter{
+
+        @Override
+        public int getCount() {
+            return numberOfMonthsBefore+1+numberOfMonthsAfter;
+        }
+
+        @Override
+        public boolean isViewFromObject(View view, Object object) {
+            return view == object;
+        }
+
+        int lastPosition = 0;
+        int defaultDay = NO_DAY;
+        // Pages currently added to the pager by their month index
+        SparseArray<MonthPage> livePages = new SparseArray<MonthPage>();
+
+        @Override
+        public int getItemPosition(Object object) {
+            int position = getPosition(((MonthPage) object).getMonthIndex());
+            return position>=0 && position<getCount() ? position : POSITION_NONE;
+        }
+
+        @Override
+        public Object instantiateItem(ViewGroup container, int position){
+            CalendarMetricsListener metrics = metricsListener;
+            long start = metrics!=null ? System.nanoTime() : 0;
+            int poolHits = pagePool.hits;
+
+            int monthIndex = getMonthIndex(position);
+            MonthPage page = pagePool.acquire(monthIndex);
+            lastPosition = position;
+            // Pages prepared ahead or pooled are already bound to their month, and kept up to
+            // date while pooled
+            boolean bound = page.isBoundTo(monthIndex);
+            if(bindScheduler.shouldDefer(position)){
+                if(!bound) page.bindPlaceholder(monthIndex);
+                bindScheduler.defer(page);
+            }else if(!bound){
+                page.setMonthIndex(monthIndex);
+            }else{
+                page.bindDecorations();
+            }
+            if(defaultDay!=NO_DAY && DayMath.monthIndexOfEpochDay(defaultDay)==monthIndex){
+                page.setSelectedDay(defaultDay);
+                defaultDay = NO_DAY; // after we found it make it no longer usable in future
+            }
+
+            container.addView((View) page);
+            livePages.put(monthIndex, page);
+            if(metrics!=null) metrics.onPageInstantiated(System.nanoTime() - start, pagePool.hits!=poolHits);
+            return page;
+        }
+
+        @Override
+        public void destroyItem(ViewGroup container, int position, Object object){
+            MonthPage page = (MonthPage) object;
+            container.removeView((View) page);
+            // Pooled pages do not keep a snapshot they would be shown with later
+            if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) setSnapshotLayer((View) page, false);
+            if(livePages.get(page.getMonthIndex())==page) livePages.remove(page.getMonthIndex());
+            bindScheduler.remove(page);
+            pagePool.release(page);
+        }
+
+        /**
+         * Selects the day on its page if the page is live, otherwise when it is instantiated.
+         */
+        public void setDaySelected(int epochDay) {
+            // Pooled pages of other months go back to the selection a fresh bind shows
+            int monthIndex = DayMath.monthIndexOfEpochDay(epochDay);
+            for(MonthPage pooled : pagePool.pages){
+                if(pooled.getMonthIndex()!=monthIndex) pooled.setSelectedDay(NO_DAY);
+            }
+            MonthPage page = livePages.get(monthIndex);
+            if(page!=null){
+                page.setSelectedDay(epochDay);
+                defaultDay = NO_DAY;
+            }else{
+                defaultDay = epochDay;
+            }
+        }
+    }
+
+    /**
+     * Keeps month pages the pager no longer shows so they can be rebound to another month
+     * through {@link MonthPage#setMonthIndex(int)} instead of being inflated again.
+     */
+    class MonthPagePool{
+
+        // Kept up to date with the data of their month like the live pages
+        final ArrayDeque<MonthPage> pages = new ArrayDeque<MonthPage>();
+        int maxSize = 3;
+        int hits;
+        int misses;
+
+        /**
+         * @return The pooled page bound to the month, null if there is none
+         */
+        MonthPage find(int monthIndex){
+            for(MonthPage pooled : pages){
+                if(pooled.isBoundTo(monthIndex)) return pooled;
+            }
+            return null;
+        }
+
+        /**
+         * @return A pooled page, preferably one already bound to the month, or a new page
+         */
+        MonthPage acquire(int monthIndex){
+            MonthPage page = find(monthIndex);
+            if(page!=null) pages.remove(page);
+            else page = pages.poll();
+            if(page!=null){
+                hits++;
+                return page;
+            }
+            misses++;
+            return newPage();
+        }
+
+        /**
+         * Gets a pooled page bound to the month ahead of it being shown. Without a pooled page
+         * for the month, a new one is added if there is room or else the oldest is rebound.
+         * @return The pooled page bound to the month, null if the pool holds no pages
+         */
+        MonthPage prepareAhead(int monthIndex){
+            MonthPage page = find(monthIndex);
+            if(page!=null){
+                page.bindDecorations();
+                return page;
+            }
+            if(pages.size()>=maxSize) page = pages.poll();
+            else if(maxSize>0) page = newPage();
+            if(page==null) return null;
+            page.setMonthIndex(monthIndex);
+            pages.offer(page);
+            return page;
+        }
+
+        /**
+         * Adds a page bound to the month unless the pool already holds one or is full.
+         */
+        void prepare(int monthIndex){
+            if(find(monthIndex)!=null || pages.size()>=maxSize) return;
+            MonthPage page = newPage();
+            page.setMonthIndex(monthIndex);
+            pages.offer(page);
+        }
+
+        private MonthPage newPage(){
+            return renderMode==RENDER_MODE.CANVAS
+                    ? new CalendarMonthCanvasView(getContext())
+                    : new CalendarMonthView(getContext());
+        }
+
+        /**
+         * Takes back a page the pager took down.
+         */
+        void release(MonthPage page){
+            // Pages from before a render mode change are left to be collected
+            boolean canvasPage = page instanceof CalendarMonthCanvasView;
+            if(pages.size()<maxSize && canvasPage==(renderMode==RENDER_MODE.CANVAS)){
+                pages.offer(page);
+            }
+        }
+
+        void setMaxSize(int size){
+            maxSize = size;
+            while(pages.size()>maxSize) pages.poll();
+        }
+
+        int size(){
+            return pages.size();
+        }
+
+        void clear(){
+            pages.clear();
+        }
+    }
+
+    int scrollState = SCROLL_STATE_IDLE;
+
+    private class ChangeListener implements OnPageChangeListener{
+
+        int lastScrolledPosition = -1;
+
+        @Override
+        public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+            if(displayMode!=DISPLAY_MODE.MONTH) return;
+            if(isContentHeight()){
+                int from = getHeightOfPosition(position);
+                int to = getHeightOfPosition(position + 1);
+                setVisibleHeight(Math.round(from + (to - from) * positionOffset));
+            }
+            bindScheduler.onScrolled();
+            // Scrolling shows position and position+1, get the months either side of them going.
+            // Months passed through by a fast scroll are not worth loading.
+            if(eventLoader!=null && !bindScheduler.isFast() && position!=lastScrolledPosition){
+                lastScrolledPosition = position;
+                eventLoader.prefetch(getMonthIndex(position) - 1);
+                eventLoader.prefetch(getMonthIndex(position) + 2);
+            }
+        }
+
+        int lastPage = 0;
+
+        @Override
+        public void onPageSelected(int position) {
+            if(displayMode!=DISPLAY_MODE.MONTH) return;
+            int monthSelected = getMonthIndex(position);
+            if(eventLoader!=null) eventLoader.setCurrentMonth(monthSelected);
+            // The page the pager settles on is bound in full at once
+            bindScheduler.bindNow(calendarViewAdapter.livePages.get(monthSelected));
+            if(eventLoader!=null && !bindScheduler.isFast()){
+                eventLoader.prefetch(monthSelected - 1);
+                eventLoader.prefetch(monthSelected + 1);
+            }
+            intrinsicHeight = getRowsForMonth(monthSelected) * rowHeight;
+            // Jumps without a scroll do not go through a scroll state change
+            if(scrollState==SCROLL_STATE_IDLE && isContentHeight() && getMeasuredHeight()!=intrinsicHeight) requestLayout();
+            if(calendarViewListener!=null){
+                calendarViewListener.onMonthSelected(DayMath.monthToCalendar(monthSelected));
+            }
+        }
+
+        @Override
+        public void onPageScrollStateChanged(int state) {
+            boolean idleChanged = (scrollState==SCROLL_STATE_IDLE)!=(state==SCROLL_STATE_IDLE);
+            scrollState = state;
+            if(displayMode==DISPLAY_MODE.MONTH) bindScheduler.onScrollStateChanged(state);
+            // Laid out again only when scrolling starts or stops, never per frame
+            if(idleChanged && isContentHeight()) requestLayout();
+            if(!snapshotPaging || displayMode!=DISPLAY_MODE.MONTH) return;
+            if(state==SCROLL_STATE_IDLE){
+                // Back to the live, interactive pages
+                setPagesSnapshotted(false);
+                prepareSnapshots();
+            }else{
+                setPagesSnapshotted(true);
+            }
+        }
+    }
+
+    BindScheduler bindScheduler = new BindScheduler();
+
+    /**
+     * Decides which month pages are bound in full when the pager instantiates them and which
+     * only get a placeholder, from how fast the pager moves and how far the page is from the one
+     * it settles on. A page only passed through then never queries its events. Placeholders are
+     * completed nearest first, one per idle pass, once the pager slows down, and at once when
+     * their page is selected.
+     */
+    class BindScheduler implements MessageQueue.IdleHandler{
+
+        // Faster than this the pages next to the target are only passed through
+        static final float FAST_PAGES_PER_SECOND = 3f;
+
+        final ArrayList<MonthPage> placeholders = new ArrayList<MonthPage>();
+        // Pages per second, smoothed over the last frames
+        float velocity;
+        int lastScrollX;
+        long lastScrollTime;
+        boolean queued;
+
+        void onScrolled(){
+            long now = SystemClock.uptimeMillis();
+            int scrollX = getScrollX();
+            int pageWidth = getWidth() + getPageMargin();
+            if(lastScrollTime!=0 && now>lastScrollTime && pageWidth>0){
+                float frameVelocity = (scrollX - lastScrollX) * 1000f / pageWidth / (now - lastScrollTime);
+                velocity = (velocity + frameVelocity) / 2;
+            }
+            lastScrollX = scrollX;
+            lastScrollTime = now;
+            if(!isFast()) schedule();
+        }
+
+        void onScrollStateChanged(int state){
+            if(state!=SCROLL_STATE_IDLE) return;
+            velocity = 0;
+            lastScrollTime = 0;
+            schedule();
+        }
+
+        boolean isFast(){
+            return scrollState!=SCROLL_STATE_IDLE && Math.abs(velocity)>FAST_PAGES_PER_SECOND;
+        }
+
+        /**
+         * @return Whether the page at the position should only get a placeholder for now
+         */
+        boolean shouldDefer(int position){
+            // The pager already points at the page it settles on while instantiating
+            int distance = Math.abs(position - getCurrentItem());
+            return distance>1 || (distance==1 && isFast());
+        }
+
+        void defer(MonthPage page){
+            if(!placeholders.contains(page)) placeholders.add(page);
+            if(!isFast()) schedule();
+        }
+
+        void bindNow(MonthPage page){
+            if(page==null || !placeholders.remove(page)) return;
+            page.bindDecorations();
+        }
+
+        void remove(MonthPage page){
+            placeholders.remove(page);
+        }
+
+        void schedule(){
+            if(queued || placeholders.isEmpty()) return;
+            queued = true;
+            Looper.myQueue().addIdleHandler(this);
+        }
+
+        /**
+         * Stops completing placeholders until the next schedule.
+         */
+        void cancel(){
+            if(!queued) return;
+            queued = false;
+            Looper.myQueue().removeIdleHandler(this);
+        }
+
+        @Override
+        public boolean queueIdle() {
+            // A fast scroll picks the binding up again once it slows down
+            if(!isFast() && !placeholders.isEmpty()){
+                MonthPage nearest = null;
+                int nearestDistance = Integer.MAX_VALUE;
+                for(MonthPage page : placeholders){
+                    int distance = Math.abs(getPosition(page.getMonthIndex()) - getCurrentItem());
+                    if(distance<nearestDistance){
+                        nearest = page;
+                        nearestDistance = distance;
+                    }
+                }
+                placeholders.remove(nearest);
+                nearest.bindDecorations();
+                if(!placeholders.isEmpty()) return true;
+            }
+            queued = false;
+            return false;
+        }
+    }
+
+    public class CalendarMonthView extends LinearLayout implements MonthPage, DayCellHost{
+
+        TextView monthTitleRow;
+        View daysOfWeekRow;
+        // Locale the days of week row was labelled for
+        CalendarLocale boundLocale;
+        GridView gridView;
+        final MonthBinding binding = new MonthBinding();
+        CalendarMonthAdapter monthAdapter = new CalendarMonthAdapter();
+        CalendarDayView lastSelectedDayView;
+        int[] categoryCounts;
+
+        public CalendarMonthView(Context context) {
+            super(context);
+            LayoutInflater.from(context).inflate(R.layout.view_calendar_month, this, true);
+            gridView = (GridView) findViewById(R.id.calendar_month_gridview);
+            monthTitleRow = (TextView) findViewById(R.id.month_title_row);
+            daysOfWeekRow = findViewById(R.id.days_of_week_row);
+        }
+
+        public void setCalendarDate(Calendar calendar){
+            setMonthIndex(DayMath.monthIndex(calendar));
+        }
+
+        @Override
+        public int getMonthIndex(){
+            return binding.layout!=null ? binding.layout.monthIndex : NO_DAY;
+        }
+
+        @Override
+        public boolean isBoundTo(int monthIndex){
+            return binding.isBoundTo(monthIndex, calendarLocale);
+        }
+
+        @Override
+        public void setMonthIndex(int monthIndex){
+            bindMonth(monthIndex, false);
+        }
+
+        @Override
+        public void bindPlaceholder(int monthIndex){
+            bindMonth(monthIndex, true);
+        }
+
+        private void bindMonth(int monthIndex, boolean placeholder){
+            CalendarMetricsListener metrics = metricsListener;
+            long start = metrics!=null ? System.nanoTime() : 0;
+            // Pages are reused for other months, start over with a fresh selection
+            binding.bind(getMonthLayout(monthIndex), calendarLocale, includeYearInTitle,
+                    todayEpochDay, getSelectionMask(monthIndex), placeholder);
+            if(placeholder){
+                if(categoryCounts!=null) Arrays.fill(categoryCounts, 0);
+            }else{
+                // Fetch the whole month of events once, cells only read from the mask
+                binding.bindEvents(loadEventMask(monthIndex, binding.eventCounts));
+                categoryCounts = loadCategoryCounts(monthIndex, categoryCounts);
+            }
+            lastSelectedDayView = null;
+            if(gridView.getAdapter()==null) gridView.setAdapter(monthAdapter);
+            else monthAdapter.notifyDataSetChanged();
+            monthTitleRow.setText(binding.title);
+            monthTitleRow.setVisibility(showMonthTitle ? VISIBLE : GONE);
+            daysOfWeekRow.setVisibility(showDaysOfWeekRow ? VISIBLE : GONE);
+            if(boundLocale!=calendarLocale){
+                boundLocale = calendarLocale;
+                bindDaysOfWeekRow(daysOfWeekRow);
+            }
+            if(metrics!=null) metrics.onMonthBound(System.nanoTime() - start);
+        }
+
+        public void setDaySelected(Calendar calendar) {
+            setSelectedDay(calendar!=null ? DayMath.epochDay(calendar) : NO_DAY);
+        }
+
+        @Override
+        public void setEventCounts(int[] counts) {
+            int changed = binding.setEventCounts(counts, decorationMode!=DECORATION_MODE.INDICATOR);
+            if(changed!=0) refreshDays(changed);
+        }
+
+        @Override
+        public void bindDecorations() {
+            if(!binding.placeholder) return;
+            int monthIndex = binding.layout.monthIndex;
+            binding.bindEvents(loadEventMask(monthIndex, binding.eventCounts));
+            categoryCounts = loadCategoryCounts(monthIndex, categoryCounts);
+            // Only days with events looked different as a placeholder
+            refreshDays(decorationMode==DECORATION_MODE.CATEGORY_RINGS ? -1 : binding.eventMask);
+        }
+
+        @Override
+        public void refreshDecorations() {
+            if(binding.layout==null || binding.placeholder) return;
+            categoryCounts = loadCategoryCounts(binding.layout.monthIndex, categoryCounts);
+            refreshDays(-1);
+        }
+
+        @Override
+        public void setSelectionMask(int mask) {
+            int changed = binding.setSelectionMask(mask);
+            if(changed!=0) refreshDays(changed);
+        }
+
+        /**
+         * Repaints the laid out cells of the days set in the mask, bit (day-1) for each day.
+         */
+        private void refreshDays(int days){
+            for(int i=0;i<gridView.getChildCount();i++){
+                CalendarDayView dayView = (CalendarDayView) gridView.getChildAt(i);
+                if(dayView.slot<0 || (days & (1<<dayView.slot))==0) continue;
+                if(selectionMode!=SELECTION_MODE.SINGLE) dayView.bindSelection();
+                // The selected look does not show events
+                else if(dayView!=lastSelectedDayView) dayView.setDeselected();
+                else continue;
+                cellBindCount++;
+            }
+        }
+
+        @Override
+        public void setSelectedDay(int epochDay) {
+            monthAdapter.setDaySelected(epochDay!=NO_DAY ? binding.layout.dayOfMonth(epochDay) : 1);
+        }
+
+        class CalendarMonthAdapter extends BaseAdapter{
+
+            @Override
+            public int getCount() {
+                return binding.layout.cellCount;
+            }
+
+            @Override
+            public Object getItem(int i) {
+                return null;
+            }
+
+            @Override
+            public long getItemId(int i) {
+                return 0;
+            }
+
+            @Override
+            public View getView(int i, View view, ViewGroup viewGroup) {
+                CalendarMetricsListener metrics = metricsListener;
+                long start = metrics!=null ? System.nanoTime() : 0;
+                cellBindCount++;
+                CalendarDayView calendarDayView;
+                if(view!=null){
+                    calendarDayView = (CalendarDayView) view;
+                }else{
+                    calendarDayView = new CalendarDayView(getContext(), CalendarMonthView.this);
+                }
+
+                int dayOfMonth = binding.dayOfCell(i);
+
+                if(dayOfMonth>0) calendarDayView.setDay(binding.layout.epochDay(dayOfMonth), dayOfMonth, dayOfMonth-1);
+                else calendarDayView.setBlank();
+                if(selectionMode!=SELECTION_MODE.SINGLE){
+                    calendarDayView.bindSelection();
+                }else if(binding.isSelected(dayOfMonth, true)){
+                    if(lastSelectedDayView!=null) lastSelectedDayView.setDeselected();
+                    lastSelectedDayView = calendarDayView;
+                    calendarDayView.setSelected();
+                }else calendarDayView.setDeselected();
+                calendarDayView.dayCircle.setOnDrawListener(circleDrawListener);
+
+                if(metrics!=null) metrics.onCellBound(System.nanoTime() - start, view!=null);
+                return calendarDayView;
+            }
+
+            /**
+             * Moves the selection by repainting only the previously selected cell and the
+             * newly selected one. Cells not laid out yet pick it up when they are bound.
+             */
+            public void setDaySelected(int dayOfMonth) {
+                binding.selectDay(dayOfMonth);
+                // The single selection is not shown while selecting several days
+                if(selectionMode!=SELECTION_MODE.SINGLE) return;
+                if(lastSelectedDayView!=null){
+                    lastSelectedDayView.setDeselected();
+                    cellBindCount++;
+                    lastSelectedDayView = null;
+                }
+                View child = gridView.getChildAt(binding.layout.daysBeforeFirstDay + dayOfMonth - 1 - gridView.getFirstVisiblePosition());
+                if(child instanceof CalendarDayView){
+                    lastSelectedDayView = (CalendarDayView) child;
+                    lastSelectedDayView.setSelected();
+                    cellBindCount++;
+                }
+            }
+
+        }
+
+        @Override
+        public int getDayEventMask() {
+            return binding.eventMask;
+        }
+
+        @Override
+        public int[] getDayEventCounts() {
+            return binding.eventCounts;
+        }
+
+        @Override
+        public int[] getDayCategoryCounts() {
+            return categoryCounts;
+        }
+
+        @Override
+        public int getDaySelectionMask() {
+            return binding.selectionMask;
+        }
+
+        @Override
+        public void onDayClick(CalendarDayView dayView) {
+            if(selectionMode!=SELECTION_MODE.SINGLE){
+                onSelectionTap(dayView.epochDay);
+                return;
+            }
+            if(lastSelectedDayView!=null) lastSelectedDayView.setDeselected();
+            lastSelectedDayView = dayView;
+            binding.selectDay(dayView.dayOfMonth);
+            dayView.setSelected();
+
+            if(calendarViewListener!=null){
+                calendarViewListener.onDaySelected(selectedDay=dayView.getDay());
+            }
+        }
+    }
+
+    /**
+     * A page whose days are {@link CalendarDayView} cells. Day data is indexed by slot, the
+     * cell's place on the page: day of month less one on a month, day of week on a week.
+     */
+    interface DayCellHost{
+        // Bit slot is set when that day has an event
+        public int getDayEventMask();
+        public int[] getDayEventCounts();
+        // Packed as counts[slot*categories + category], null when not loaded
+        public int[] getDayCategoryCounts();
+        // Bit slot is set when that day is in the multiple or range selection
+        public int getDaySelectionMask();
+        public void onDayClick(CalendarDayView dayView);
+    }
+
+    /**
+     * One day cell, its look set from its host's data for its slot.
+     */
+    class CalendarDayView extends FrameLayout implements OnClickListener{
+
+        final DayCellHost host;
+        TextView dayText;
+        AdaptableCircleView dayCircle;
+        int dayOfMonth = -1;
+        int slot = -1;
+        int epochDay = NO_DAY;
+
+        public CalendarDayView(Context context, DayCellHost host) {
+            super(context);
+            this.host = host;
+            LayoutInflater.from(context).inflate(R.layout.view_calendar_day, this, true);
+            dayText = (TextView) findViewById(R.id.calendar_day_text);
+            dayCircle = (AdaptableCircleView) findViewById(R.id.calendar_day_circle);
+            setDeselected();
+            setOnClickListener(this);
+        }
+
+        public void setDay(int epochDay, int dayOfMonth, int slot){
+            this.dayOfMonth = dayOfMonth;
+            this.slot = slot;
+            this.epochDay = epochDay;
+            dayText.setText(DayMath.dayOfMonthLabel(dayOfMonth));
+            setVisibility(VISIBLE);
+            setClickable(true);
+        }
+
+        public void setBlank(){
+            dayOfMonth = -1;
+            slot = -1;
+            epochDay = NO_DAY;
+            setVisibility(INVISIBLE);
+            dayText.setText("");
+            setClickable(false);
+        }
+
+        public boolean hasEvent(){
+            return slot>=0 && (host.getDayEventMask() & (1<<slot))!=0;
+        }
+
+        public Calendar getDay(){
+            return DayMath.toCalendar(epochDay);
+        }
+
+
+        public void setAsToday(){
+            dayText.setTextColor(Color.WHITE);
+            dayCircle.setBackgroundColor(primaryColor);
+            dayCircle.setPercentage(0.0f);
+            dayCircle.clearSegments();
+        }
+
+        public void setAsHavingEvent() {
+            dayText.setTextColor(Color.BLACK);
+            dayCircle.setBackgroundColor(Color.LTGRAY);
+            dayCircle.setInsetPadding(1);
+            dayCircle.setForegroundColor(Color.WHITE);
+            dayCircle.setPercentage(1.0f);
+            dayCircle.clearSegments();
+        }
+
+        public void setAsHeat(int color){
+            dayText.setTextColor(Color.BLACK);
+            dayCircle.setBackgroundColor(color);
+            dayCircle.setPercentage(0.0f);
+            dayCircle.clearSegments();
+        }
+
+        public void setAsHavingCategories(){
+            dayText.setTextColor(Color.BLACK);
+            dayCircle.setBackgroundColor(Color.WHITE);
+            dayCircle.setPercentage(0.0f);
+            int categories = categoryColors.length;
+            dayCircle.setSegments(host.getDayCategoryCounts(), slot*categories, categories, categoryColors);
+        }
+
+        public void setAsNotHavingEvent(){
+            dayText.setTextColor(Color.BLACK);
+            dayCircle.setBackgroundColor(Color.WHITE);
+            dayCircle.clearSegments();
+        }
+
+        public void setSelected(){
+            if(epochDay==todayEpochDay) setAsToday();
+            else {
+                dayText.setTextColor(Color.BLACK);
+                dayCircle.setBackgroundColor(Color.LTGRAY);
+                dayCircle.setPercentage(0.0f);
+                dayCircle.clearSegments();
+            }
+        }
+
+        public void setDeselected(){
+            // If this day is today, mark it as so
+            if(epochDay==todayEpochDay) setAsToday();
+                // If this day has no event, leave it plain
+            else if(!hasEvent()) setAsNotHavingEvent();
+            else if(decorationMode==DECORATION_MODE.HEATMAP) setAsHeat(heatmapColor(host.getDayEventCounts()[slot]));
+            else if(decorationMode==DECORATION_MODE.CATEGORY_RINGS && categoryCount()>0 && host.getDayCategoryCounts()!=null) setAsHavingCategories();
+                // If this day has event, mark it as so
+            else setAsHavingEvent();
+        }
+
+        /**
+         * Shows the day as selected or not by the multiple or range selection.
+         */
+        public void bindSelection(){
+            if(slot>=0 && (host.getDaySelectionMask() & (1<<slot))!=0) setSelected();
+            else setDeselected();
+        }
+
+        @Override
+        public void onClick(View view) {
+            host.onDayClick(this);
+        }
+
+    }
+
+    /**
+     * Draws the title, the days of week row and every day of a month on one canvas, without
+     * any child views. Touches are mapped to days by their position in the grid.
+     */
+    public class CalendarMonthCanvasView extends View implements MonthPage{
+
+        final MonthBinding binding = new MonthBinding();
+        int[] categoryCounts;
+
+        private final Paint titlePaint;
+        private final Paint daysOfWeekPaint;
+        private final Paint dayTextPaint;
+        private final Paint circlePaint;
+        private final Paint segmentPaint;
+        private final RectF segmentRect = new RectF();
+        private final int horizontalPadding;
+        private final float circleRadius;
+
+        public CalendarMonthCanvasView(Context context) {
+            super(context);
+            Resources resources = context.getResources();
+            DisplayMetrics metrics = resources.getDisplayMetrics();
+            horizontalPadding = (int) resources.getDimension(R.dimen.padding_large);
+            // Matches the day circle of view_calendar_day, its height less its padding
+            circleRadius = rowHeight/2f - resources.getDimension(R.dimen.padding_small);
+
+            titlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            titlePaint.setTextAlign(Paint.Align.CENTER);
+            titlePaint.setTypeface(Typeface.create("sans-serif-light", Typeface.BOLD));
+            titlePaint.setColor(resources.getColor(R.color.gray));
+            titlePaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 18, metrics));
+
+            daysOfWeekPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            daysOfWeekPaint.setTextAlign(Paint.Align.CENTER);
+            daysOfWeekPaint.setTypeface(Typeface.DEFAULT_BOLD);
+            daysOfWeekPaint.setColor(resources.getColor(android.R.color.darker_gray));
+            daysOfWeekPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 14, metrics));
+
+            dayTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            dayTextPaint.setTextAlign(Paint.Align.CENTER);
+            dayTextPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 14, metrics));
+
+            circlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            circlePaint.setStyle(Paint.Style.FILL);
+
+            segmentPaint = AdaptableCircleView.newSegmentPaint(3 * metrics.density);
+        }
+
+        public void setCalendarDate(Calendar calendar){
+            setMonthIndex(DayMath.monthIndex(calendar));
+        }
+
+        @Override
+        public int getMonthIndex(){
+            return binding.layout!=null ? binding.layout.monthIndex : NO_DAY;
+        }
+
+        @Override
+        public boolean isBoundTo(int monthIndex){
+            return binding.isBoundTo(monthIndex, calendarLocale);
+        }
+
+        @Override
+        public void setMonthIndex(int monthIndex){
+            bindMonth(monthIndex, false);
+        }
+
+        @Override
+        public void bindPlaceholder(int monthIndex){
+            bindMonth(monthIndex, true);
+        }
+
+        private void bindMonth(int monthIndex, boolean placeholder){
+            CalendarMetricsListener metrics = metricsListener;
+            long start = metrics!=null ? System.nanoTime() : 0;
+            binding.bind(getMonthLayout(monthIndex), calendarLocale, includeYearInTitle,
+                    todayEpochDay, getSelectionMask(monthIndex), placeholder);
+            if(placeholder){
+                if(categoryCounts!=null) Arrays.fill(categoryCounts, 0);
+            }else{
+                binding.bindEvents(loadEventMask(monthIndex, binding.eventCounts));
+                categoryCounts = loadCategoryCounts(monthIndex, categoryCounts);
+            }
+            requestLayout();
+            invalidate();
+            if(metrics!=null) metrics.onMonthBound(System.nanoTime() - start);
+        }
+
+        public void setDaySelected(Calendar calendar) {
+            setSelectedDay(calendar!=null ? DayMath.epochDay(calendar) : NO_DAY);
+        }
+
+        @Override
+        public void setSelectedDay(int epochDay) {
+            int previous = binding.selectDay(epochDay!=NO_DAY ? binding.layout.dayOfMonth(epochDay) : 1);
+            invalidateDay(previous);
+            invalidateDay(binding.selectedDayOfMonth);
+        }
+
+        @Override
+        public void setEventCounts(int[] counts) {
+            int changed = binding.setEventCounts(counts, decorationMode!=DECORATION_MODE.INDICATOR);
+            for(int day=1;changed!=0;day++,changed>>>=1){
+                if((changed & 1)!=0) invalidateDay(day);
+            }
+        }
+
+        @Override
+        public void bindDecorations() {
+            if(!binding.placeholder) return;
+            int monthIndex = binding.layout.monthIndex;
+            binding.bindEvents(loadEventMask(monthIndex, binding.eventCounts));
+            categoryCounts = loadCategoryCounts(monthIndex, categoryCounts);
+            invalidate();
+        }
+
+        @Override
+        public void refreshDecorations() {
+            if(binding.layout==null || binding.placeholder) return;
+            categoryCounts = loadCategoryCounts(binding.layout.monthIndex, categoryCounts);
+            invalidate();
+        }
+
+        @Override
+        public void setSelectionMask(int mask) {
+            int changed = binding.setSelectionMask(mask);
+            for(int day=1;changed!=0;day++,changed>>>=1){
+                if((changed & 1)!=0) invalidateDay(day);
+            }
+        }
+
+        /**
+         * Invalidates only the area of a single day's cell.
+         */
+        private void invalidateDay(int day){
+            MonthLayout monthLayout = binding.layout;
+            if(monthLayout==null || day<1 || day>monthLayout.daysInMonth) return;
+            cellBindCount++;
+            int cell = monthLayout.daysBeforeFirstDay + day - 1;
+            float cellWidth = cellWidth();
+            int left = (int) (horizontalPadding + (cell % 7) * cellWidth);
+            int top = (headerRows() + cell / 7) * rowHeight;
+            invalidate(left, top, (int) Math.ceil(left + cellWidth), top + rowHeight);
+        }
+
+        private int headerRows(){
+            return (showMonthTitle ? 1 : 0) + (showDaysOfWeekRow ? 1 : 0);
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            int rows = binding.layout!=null ? binding.layout.getRows(showMonthTitle,showDaysOfWeekRow) : headerRows();
+            setMeasuredDimension(
+                    MeasureSpec.getSize(widthMeasureSpec),
+                    resolveSize(rows * rowHeight, heightMeasureSpec)
+            );
+        }
+
+        private float cellWidth(){
+            return (getWidth() - 2*horizontalPadding) / 7f;
+        }
+
+        @Override
+        protected void onDraw(Canvas canvas) {
+            super.onDraw(canvas);
+            MonthLayout monthLayout = binding.layout;
+            if(monthLayout==null) return;
+            float cellWidth = cellWidth();
+            float top = 0;
+
+            if(showMonthTitle){
+                drawCenteredText(canvas, binding.title, getWidth()/2f, top, titlePaint);
+                top += rowHeight;
+            }
+            if(showDaysOfWeekRow){
+                for(int i=0;i<7;i++){
+                    drawCenteredText(canvas, calendarLocale.weekdayLabels[i], horizontalPadding + (i+0.5f)*cellWidth, top, daysOfWeekPaint);
+                }
+                top += rowHeight;
+            }
+
+            for(int day=1;day<=monthLayout.daysInMonth;day++){
+                int cell = monthLayout.daysBeforeFirstDay + day - 1;
+                float centerX = horizontalPadding + ((cell % 7) + 0.5f) * cellWidth;
+                float cellTop = top + (cell / 7) * rowHeight;
+                float centerY = cellTop + rowHeight/2f;
+
+                int textColor = Color.BLACK;
+                switch(binding.dayState(day, selectionMode==SELECTION_MODE.SINGLE)){
+                    case MonthBinding.DAY_TODAY:
+                        // Today is always shown as today, selected or not
+                        textColor = Color.WHITE;
+                        circlePaint.setColor(primaryColor);
+                        canvas.drawCircle(centerX, centerY, circleRadius, circlePaint);
+                        break;
+                    case MonthBinding.DAY_SELECTED:
+                        circlePaint.setColor(Color.LTGRAY);
+                        canvas.drawCircle(centerX, centerY, circleRadius, circlePaint);
+                        break;
+                    case MonthBinding.DAY_EVENT:
+                        drawDecoration(canvas, day, centerX, centerY);
+                        break;
+                }
+                dayTextPaint.setColor(textColor);
+                drawCenteredText(canvas, DayMath.dayOfMonthLabel(day), centerX, cellTop, dayTextPaint);
+            }
+        }
+
+        private void drawDecoration(Canvas canvas, int day, float centerX, float centerY){
+            int categories = categoryCount();
+            if(decorationMode==DECORATION_MODE.HEATMAP){
+                circlePaint.setColor(heatmapColor(binding.eventCounts[day-1]));
+                canvas.drawCircle(centerX, centerY, circleRadius, circlePaint);
+            }else if(decorationMode==DECORATION_MODE.CATEGORY_RINGS && categories>0 && categoryCounts!=null){
+                float radius = circleRadius - segmentPaint.getStrokeWidth()/2;
+                segmentRect.set(centerX - radius, centerY - radius, centerX + radius, centerY + radius);
+                AdaptableCircleView.drawSegments(canvas, segmentRect, categoryCounts, (day-1)*categories, categories, categoryColors, segmentPaint);
+            }else{
+                // Grey ring, same as the full white pie inset by one pixel
+                circlePaint.setColor(Color.LTGRAY);
+                canvas.drawCircle(centerX, centerY, circleRadius, circlePaint);
+                circlePaint.setColor(Color.WHITE);
+                canvas.drawCircle(centerX, centerY, circleRadius - 1, circlePaint);
+            }
+        }
+
+        private void drawCenteredText(Canvas canvas, String text, float centerX, float rowTop, Paint paint){
+            float baseline = rowTop + (rowHeight - paint.ascent() - paint.descent()) / 2f;
+            canvas.drawText(text, centerX, baseline, paint);
+        }
+
+        /**
+         * @return Day of month under the given point or -1 if it is not on a day
+         */
+        private int dayAt(float x, float y){
+            float gridTop = headerRows() * rowHeight;
+            MonthLayout monthLayout = binding.layout;
+            if(monthLayout==null || y<gridTop || x<horizontalPadding || x>=getWidth()-horizontalPadding) return -1;
+            int column = (int) ((x - horizontalPadding) / cellWidth());
+            int row = (int) ((y - gridTop) / rowHeight);
+            int day = row*7 + column + 1 - monthLayout.daysBeforeFirstDay;
+            return day>0 && day<=monthLayout.daysInMonth ? day : -1;
+        }
+
+        @Override
+        public boolean onTouchEvent(MotionEvent event) {
+            switch (event.getAction()){
+                case MotionEvent.ACTION_DOWN:
+                    return dayAt(event.getX(), event.getY())>0;
+                case MotionEvent.ACTION_UP:
+                    int day = dayAt(event.getX(), event.getY());
+                    if(day>0 && selectionMode!=SELECTION_MODE.SINGLE){
+                        playSoundEffect(SoundEffectConstants.CLICK);
+                        onSelectionTap(binding.layout.epochDay(day));
+                    }else if(day>0){
+                        int previous = binding.selectDay(day);
+                        invalidateDay(previous);
+                        invalidateDay(day);
+                        playSoundEffect(SoundEffectConstants.CLICK);
+                        if(calendarViewListener!=null){
+                            calendarViewListener.onDaySelected(selectedDay=DayMath.toCalendar(binding.layout.epochDay(day)));
+                        }
+                    }
+                    return true;
+            }
+            return super.onTouchEvent(event);
+        }
+
+    }
+
+    /**
+     * Pages weeks, covering every week that has a day in the month range.
+     */
+    class CalendarWeekAdapter extends PagerAdapter{
+
+        // Week pages taken down, to be rebound to another week
+        private final ArrayDeque<CalendarWeekView> recycled = new ArrayDeque<CalendarWeekView>();
+        // Pages currently added to the pager by their week index
+        final SparseArray<CalendarWeekView> liveWeeks = new SparseArray<CalendarWeekView>();
+
+        @Override
+        public int getCount() {
+            int lastMonthIndex = getMonthIndex(numberOfMonthsBefore+numberOfMonthsAfter);
+            int lastDay = DayMath.firstEpochDayOfMonth(lastMonthIndex) + DayMath.daysInMonth(lastMonthIndex) - 1;
+            return getWeekPosition(DayMath.weekIndex(lastDay, calendarLocale.firstDayOfWeek)) + 1;
+        }
+
+        @Override
+        public boolean isViewFromObject(View view, Object object) {
+            return view == object;
+        }
+
+        @Override
+        public int getItemPosition(Object object) {
+            int position = getWeekPosition(((CalendarWeekView) object).weekIndex);
+            return position>=0 && position<getCount() ? position : POSITION_NONE;
+        }
+
+        @Override
+        public Object instantiateItem(ViewGroup container, int position) {
+            CalendarWeekView weekView = recycled.poll();
+            if(weekView==null) weekView = new CalendarWeekView(getContext());
+            weekView.setWeekIndex(getWeekIndex(position));
+            container.addView(weekView);
+            liveWeeks.put(weekView.weekIndex, weekView);
+            return weekView;
+        }
+
+        @Override
+        public void destroyItem(ViewGroup container, int position, Object object) {
+            CalendarWeekView weekView = (CalendarWeekView) object;
+            container.removeView(weekView);
+            if(liveWeeks.get(weekView.weekIndex)==weekView) liveWeeks.remove(weekView.weekIndex);
+            recycled.offer(weekView);
+        }
+
+        int recycledCount(){
+            return recycled.size();
+        }
+
+        void clearRecycled(){
+            recycled.clear();
+        }
+
+        /**
+         * Moves the single selection, repainting only the two cells involved.
+         */
+        void setSelectedDay(int previousEpochDay, int epochDay){
+            for(int i=0;i<liveWeeks.size();i++){
+                CalendarWeekView week = liveWeeks.valueAt(i);
+                week.refreshDay(previousEpochDay);
+                week.refreshDay(epochDay);
+            }
+        }
+    }
+
+    /**
+     * One week as a row of exactly seven {@link CalendarDayView} cells, created once and only
+     * rebound when the page moves to another week. Events are read from the months the week
+     * overlaps, through the event cache like month pages.
+     */
+    public class CalendarWeekView extends LinearLayout implements DayCellHost{
+
+        int weekIndex;
+        int firstEpochDay = NO_DAY;
+        final CalendarDayView[] dayViews = new CalendarDayView[7];
+        View daysOfWeekRow;
+        // Locale the days of week row was labelled for
+        CalendarLocale boundLocale;
+        int eventMask;
+        int[] eventCounts = new int[7];
+        int[] categoryCounts;
+        int selectionMask;
+        // Scratch arrays for loading the months the week overlaps
+        private final int[] monthCounts = new int[31];
+        private int[] monthCategoryCounts;
+
+        public CalendarWeekView(Context context) {
+            super(context);
+            LayoutInflater.from(context).inflate(R.layout.view_calendar_week, this, true);
+            setOrientation(VERTICAL);
+            daysOfWeekRow = findViewById(R.id.days_of_week_row);
+            ViewGroup daysRow = (ViewGroup) findViewById(R.id.week_days_row);
+            for(int i=0;i<7;i++){
+                dayViews[i] = new CalendarDayView(context, this);
+                daysRow.addView(dayViews[i], new LinearLayout.LayoutParams(0, LayoutParams.MATCH_PARENT, 1));
+            }
+        }
+
+        public void setWeekIndex(int weekIndex){
+            CalendarMetricsListener metrics = metricsListener;
+            long start = metrics!=null ? System.nanoTime() : 0;
+            this.weekIndex = weekIndex;
+            firstEpochDay = DayMath.firstEpochDayOfWeek(weekIndex, calendarLocale.firstDayOfWeek);
+            loadEvents();
+            selectionMask = computeSelectionMask();
+            daysOfWeekRow.setVisibility(showDaysOfWeekRow ? VISIBLE : GONE);
+            if(boundLocale!=calendarLocale){
+                boundLocale = calendarLocale;
+                bindDaysOfWeekRow(daysOfWeekRow);
+            }
+            for(int i=0;i<7;i++){
+                int epochDay = firstEpochDay + i;
+                dayViews[i].setDay(epochDay, DayMath.dayOfMonthOfEpochDay(epochDay), i);
+                dayViews[i].dayCircle.setOnDrawListener(circleDrawListener);
+            }
+            refreshDays();
+            if(metrics!=null) metrics.onMonthBound(System.nanoTime() - start);
+        }
+
+        /**
+         * Copies the week's part of the event counts of each month it overlaps.
+         */
+        private void loadEvents(){
+            int categories = categoryCount();
+            boolean loadCategories = decorationMode==DECORATION_MODE.CATEGORY_RINGS && categories>0;
+            if(loadCategories && (categoryCounts==null || categoryCounts.length<7*categories)) categoryCounts = new int[7*categories];
+            eventMask = 0;
+            for(int i=0;i<7;){
+                int epochDay = firstEpochDay + i;
+                int monthIndex = DayMath.monthIndexOfEpochDay(epochDay);
+                MonthLayout monthLayout = MonthLayout.get(monthIndex);
+                int dayOfMonth = monthLayout.dayOfMonth(epochDay);
+                int days = Math.min(7 - i, monthLayout.daysInMonth - dayOfMonth + 1);
+                int monthMask = loadEventMask(monthIndex, monthCounts);
+                System.arraycopy(monthCounts, dayOfMonth-1, eventCounts, i, days);
+                eventMask |= ((monthMask >>> (dayOfMonth-1)) & ((1<<days) - 1)) << i;
+                if(loadCategories){
+                    monthCategoryCounts = loadCategoryCounts(monthIndex, monthCategoryCounts);
+                    System.arraycopy(monthCategoryCounts, (dayOfMonth-1)*categories, categoryCounts, i*categories, days*categories);
+                }
+                i += days;
+            }
+        }
+
+        /**
+         * Reloads the week's events, repainting only the days whose count changed.
+         */
+        void reloadEvents(){
+            int[] previous = eventCounts.clone();
+            loadEvents();
+            for(int i=0;i<7;i++){
+                if(previous[i]!=eventCounts[i]) refreshDay(firstEpochDay + i);
+            }
+        }
+
+        private int computeSelectionMask(){
+            if(selectionMode==SELECTION_MODE.SINGLE) return 0;
+            int mask = 0;
+            for(int i=0;i<7;i++){
+                if(selection.contains(firstEpochDay + i)) mask |= 1<<i;
+            }
+            return mask;
+        }
+
+        /**
+         * Updates the week's part of the multiple or range selection, repainting the days
+         * that changed.
+         */
+        void bindSelectionMask(){
+            int changed = selectionMask ^ (selectionMask = computeSelectionMask());
+            for(int i=0;changed!=0;i++,changed>>>=1){
+                if((changed & 1)!=0) refreshDay(firstEpochDay + i);
+            }
+        }
+
+        void refreshDays(){
+            for(int i=0;i<7;i++) refreshDay(firstEpochDay + i);
+        }
+
+        /**
+         * Repaints the day's cell if the day is in this week.
+         */
+        void refreshDay(int epochDay){
+            int slot = epochDay - firstEpochDay;
+            if(epochDay==NO_DAY || slot<0 || slot>=7) return;
+            CalendarDayView dayView = dayViews[slot];
+            if(selectionMode!=SELECTION_MODE.SINGLE) dayView.bindSelection();
+            else if(selectedDay!=null && epochDay==DayMath.epochDay(selectedDay)) dayView.setSelected();
+            else dayView.setDeselected();
+            cellBindCount++;
+        }
+
+        @Override
+        public int getDayEventMask() {
+            return eventMask;
+        }
+
+        @Override
+        public int[] getDayEventCounts() {
+            return eventCounts;
+        }
+
+        @Override
+        public int[] getDayCategoryCounts() {
+            return categoryCounts;
+        }
+
+        @Override
+        public int getDaySelectionMask() {
+            return selectionMask;
+        }
+
+        @Override
+        public void onDayClick(CalendarDayView dayView) {
+            if(selectionMode!=SELECTION_MODE.SINGLE){
+                onSelectionTap(dayView.epochDay);
+                return;
+            }
+            int previous = selectedDay!=null ? DayMath.epochDay(selectedDay) : NO_DAY;
+            selectedDay = dayView.getDay();
+            calendarWeekAdapter.setSelectedDay(previous, dayView.epochDay);
+            if(calendarViewListener!=null){
+                calendarViewListener.onDaySelected(selectedDay);
+            }
+        }
+    }
+
+    /**
+     * Pages years, covering every year that has a month in the month range.
+     */
+    class CalendarYearAdapter extends PagerAdapter{
+
+        // Year pages taken down, to be rebound to another year
+        private final ArrayDeque<CalendarYearView> recycled = new ArrayDeque<CalendarYearView>();
+
+        @Override
+        public int getCount() {
+            return getYearPosition(DayMath.yearOfMonthIndex(getMonthIndex(numberOfMonthsBefore+numberOfMonthsAfter))) + 1;
+        }
+
+        @Override
+        public boolean isViewFromObject(View view, Object object) {
+            return view == object;
+        }
+
+        @Override
+        public int getItemPosition(Object object) {
+            int position = getYearPosition(((CalendarYearView) object).year);
+            return position>=0 && position<getCount() ? position : POSITION_NONE;
+        }
+
+        @Override
+        public Object instantiateItem(ViewGroup container, int position) {
+            CalendarYearView yearView = recycled.poll();
+            if(yearView==null) yearView = new CalendarYearView(getContext());
+            yearView.setYear(getYear(position));
+            container.addView(yearView);
+            return yearView;
+        }
+
+        @Override
+        public void destroyItem(ViewGroup container, int position, Object object) {
+            container.removeView((View) object);
+            recycled.offer((CalendarYearView) object);
+        }
+
+        int recycledCount(){
+            return recycled.size();
+        }
+
+        void clearRecycled(){
+            recycled.clear();
+        }
+    }
+
+    /**
+     * A year as twelve mini-months, three per row. Each mini-month is rendered once into a
+     * bitmap tile of {@link #yearTileCache}, so paging over years mostly just draws bitmaps.
+     */
+    public class CalendarYearView extends View{
+
+        static final int COLUMNS = 3;
+        static final int ROWS = 4;
+        // A mini-month is its title row and six week rows
+        static final int TILE_ROWS = 7;
+
+        int year;
+        private String title;
+        private final Paint titlePaint;
+        private final Paint tileTitlePaint;
+        private final Paint tileDayPaint;
+        private final Paint tileCirclePaint;
+        private final int horizontalPadding;
+        private final int[] tileCounts = new int[31];
+        private final Canvas tileCanvas = new Canvas();
+
+        public CalendarYearView(Context context) {
+            super(context);
+            Resources resources = context.getResources();
+            DisplayMetrics metrics = resources.getDisplayMetrics();
+            horizontalPadding = (int) resources.getDimension(R.dimen.padding_medium);
+
+            titlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            titlePaint.setTextAlign(Paint.Align.CENTER);
+            titlePaint.setTypeface(Typeface.create("sans-serif-light", Typeface.BOLD));
+            titlePaint.setColor(resources.getColor(R.color.gray));
+            titlePaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 18, metrics));
+
+            tileTitlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            tileTitlePaint.setTypeface(Typeface.DEFAULT_BOLD);
+            tileTitlePaint.setColor(resources.getColor(R.color.gray));
+
+            tileDayPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            tileDayPaint.setTextAlign(Paint.Align.CENTER);
+
+            tileCirclePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            tileCirclePaint.setStyle(Paint.Style.FILL);
+        }
+
+        public void setYear(int year){
+            this.year = year;
+            title = Integer.toString(year);
+            invalidate();
+        }
+
+        private int tileWidth(){
+            return (getWidth() - 2*horizontalPadding) / COLUMNS;
+        }
+
+        private int tileHeight(){
+            return (getHeight() - rowHeight) / ROWS;
+        }
+
+        @Override
+        protected void onDraw(Canvas canvas) {
+            super.onDraw(canvas);
+            int tileWidth = tileWidth();
+            int tileHeight = tileHeight();
+            canvas.drawText(title, getWidth()/2f, (rowHeight - titlePaint.ascent() - titlePaint.descent()) / 2f, titlePaint);
+            if(tileWidth<=0 || tileHeight<=0) return;
+            yearTileCache.setTileSize(tileWidth, tileHeight);
+            yearTileCache.setMinTiles((getOffscreenPageLimit()*2 + 1) * 12);
+            for(int month=0;month<12;month++){
+                int monthIndex = DayMath.monthIndex(year, month);
+                Bitmap tile = yearTileCache.get(monthIndex);
+                if(tile==null){
+                    tile = yearTileCache.obtain();
+                    renderTile(tile, monthIndex);
+                    yearTileCache.put(monthIndex, tile);
+                }
+                canvas.drawBitmap(
+                        tile,
+                        horizontalPadding + (month % COLUMNS) * tileWidth,
+                        rowHeight + (month / COLUMNS) * tileHeight,
+                        null
+                );
+            }
+        }
+
+        /**
+         * Draws the mini-month into the tile, its days from the month's layout and its events
+         * from the event cache like a month page would load them.
+         */
+        private void renderTile(Bitmap tile, int monthIndex){
+            MonthLayout monthLayout = getMonthLayout(monthIndex);
+            int eventMask = loadEventMask(monthIndex, tileCounts);
+            tileCanvas.setBitmap(tile);
+            float cellWidth = tile.getWidth() / 7f;
+            float cellHeight = tile.getHeight() / (float) TILE_ROWS;
+            float radius = Math.min(cellWidth, cellHeight) / 2f;
+            tileTitlePaint.setTextSize(cellHeight * 0.8f);
+            tileDayPaint.setTextSize(cellHeight * 0.6f);
+
+            tileCanvas.drawText(
+                    getTitleForMonth(monthIndex, false),
+                    cellWidth/2f - radius,
+                    (cellHeight - tileTitlePaint.ascent() - tileTitlePaint.descent()) / 2f,
+                    tileTitlePaint
+            );
+            float textOffset = (cellHeight - tileDayPaint.ascent() - tileDayPaint.descent()) / 2f;
+            for(int day=1;day<=monthLayout.daysInMonth;day++){
+                int cell = monthLayout.daysBeforeFirstDay + day - 1;
+                float centerX = ((cell % 7) + 0.5f) * cellWidth;
+                float cellTop = (1 + cell / 7) * cellHeight;
+                int textColor = Color.BLACK;
+                if(monthLayout.epochDay(day)==todayEpochDay){
+                    textColor = Color.WHITE;
+                    tileCirclePaint.setColor(primaryColor);
+                    tileCanvas.drawCircle(centerX, cellTop + cellHeight/2f, radius, tileCirclePaint);
+                }else if((eventMask & (1<<(day-1)))!=0){
+                    tileCirclePaint.setColor(decorationMode==DECORATION_MODE.HEATMAP ? heatmapColor(tileCounts[day-1]) : Color.LTGRAY);
+                    tileCanvas.drawCircle(centerX, cellTop + cellHeight/2f, radius, tileCirclePaint);
+                }
+                tileDayPaint.setColor(textColor);
+                tileCanvas.drawText(DayMath.dayOfMonthLabel(day), centerX, cellTop + textOffset, tileDayPaint);
+            }
+            tileCanvas.setBitmap(null);
+        }
+
+        /**
+         * @return Month under the given point, 0 to 11, or -1 if it is not on a mini-month
+         */
+        private int monthAt(float x, float y){
+            int tileWidth = tileWidth();
+            int tileHeight = tileHeight();
+            if(tileWidth<=0 || tileHeight<=0 || y<rowHeight || x<horizontalPadding) return -1;
+            int column = (int) ((x - horizontalPadding) / tileWidth);
+            int row = (int) ((y - rowHeight) / tileHeight);
+            return column<COLUMNS && row<ROWS ? row*COLUMNS + column : -1;
+        }
+
+        @Override
+        public boolean onTouchEvent(MotionEvent event) {
+            switch (event.getAction()){
+                case MotionEvent.ACTION_DOWN:
+                    return monthAt(event.getX(), event.getY())>=0;
+                case MotionEvent.ACTION_UP:
+                    int month = monthAt(event.getX(), event.getY());
+                    if(month>=0){
+                        playSoundEffect(SoundEffectConstants.CLICK);
+                        setDisplayMode(DISPLAY_MODE.MONTH);
+                        setMonth(year, month);
+                    }
+                    return true;
+            }
+            return super.onTouchEvent(event);
+        }
+    }
+
+    EventRangeIndicator eventIndicator;
+
+    /**
+     * Sets a per day indicator. It is wrapped in an {@link EventIndicatorAdapter} so months
+     * are still loaded through a single range query.
+     */
+    public void setEventIndicator(EventIndicator indicator){
+        setEventRangeIndicator(indicator!=null ? new EventIndicatorAdapter(indicator) : null);
+    }
+
+    /**
+     * Sets an indicator that is asked once per month for all of its days.
+     */
+    public void setEventRangeIndicator(EventRangeIndicator indicator){
+        eventIndicator = indicator;
+        invalidateAllEvents();
+    }
+
+    static final int DEFAULT_EVENT_CACHE_BYTES = 64*1024;
+
+    MonthEventCache eventCache = new MonthEventCache(DEFAULT_EVENT_CACHE_BYTES);
+
+    /**
+     * Sets the memory budget of the cache of loaded months, least recently used months are
+     * dropped beyond it. Each month takes about {@value MonthEventCache#ENTRY_BYTES} bytes.
+     */
+    public void setEventCacheSize(int bytes){
+        eventCache.setMaxBytes(bytes);
+    }
+
+    public int getEventCacheSize(){
+        return eventCache.getMaxBytes();
+    }
+
+    public int getEventCacheHits(){
+        return eventCache.getHits();
+    }
+
+    public int getEventCacheMisses(){
+        return eventCache.getMisses();
+    }
+
+    public int getEventCacheEvictions(){
+        return eventCache.getEvictions();
+    }
+
+    /**
+     * Forgets the cached events of the day's month and reloads it if it is shown.
+     */
+    public void invalidateEvents(Calendar day){
+        int monthIndex = DayMath.monthIndex(day);
+        invalidateEventMonths(monthIndex, monthIndex);
+    }
+
+    /**
+     * Forgets the cached events of every month from first to last, both included, and
+     * reloads the ones shown.
+     */
+    public void invalidateEvents(Calendar first, Calendar last){
+        invalidateEventMonths(DayMath.monthIndex(first), DayMath.monthIndex(last));
+    }
+
+    /**
+     * Forgets all cached events and reloads the months shown.
+     */
+    public void invalidateAllEvents(){
+        invalidateEventMonths(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    private void invalidateEventMonths(int firstMonthIndex, int lastMonthIndex){
+        eventCache.removeRange(firstMonthIndex, lastMonthIndex);
+        invalidateYearTiles(firstMonthIndex, lastMonthIndex);
+        if(eventLoader!=null) eventLoader.cancel(firstMonthIndex, lastMonthIndex);
+        reloadWeekEvents(firstMonthIndex, lastMonthIndex);
+        if(calendarViewAdapter==null) return;
+        SparseArray<MonthPage> livePages = calendarViewAdapter.livePages;
+        for(int i=0;i<livePages.size();i++){
+            int monthIndex = livePages.keyAt(i);
+            if(monthIndex>=firstMonthIndex && monthIndex<=lastMonthIndex){
+                reloadEvents(livePages.valueAt(i), monthIndex);
+            }
+        }
+        for(MonthPage page : pagePool.pages){
+            int monthIndex = page.getMonthIndex();
+            if(monthIndex>=firstMonthIndex && monthIndex<=lastMonthIndex) reloadEvents(page, monthIndex);
+        }
+    }
+
+    /**
+     * Caches freshly loaded counts and updates everything showing the month.
+     */
+    private void onEventsLoaded(int monthIndex, int[] counts){
+        eventCache.put(monthIndex, counts);
+        // Mini-months and weeks bound before the month was loaded show older counts
+        invalidateYearTiles(monthIndex, monthIndex);
+        reloadWeekEvents(monthIndex, monthIndex);
+        MonthPage page = calendarViewAdapter.livePages.get(monthIndex);
+        if(page==null) page = pagePool.find(monthIndex);
+        if(page!=null) page.setEventCounts(counts);
+    }
+
+    private final EventChangeQueue eventChanges = new EventChangeQueue(new EventChangeQueue.Listener() {
+        @Override
+        public void onEventCountsChanged(SparseArray<int[]> deltas) {
+            applyEventChanges(deltas);
+        }
+    });
+
+    /**
+     * Adds delta to the day's event count, 1 for an added event and -1 for a removed one. Safe
+     * to call from any thread. Changes are merged and applied at most once per display frame,
+     * repainting only the days shown whose count changed. Counts already loaded are taken not
+     * to include the change. Months not loaded are asked from the indicator when next bound,
+     * so it must include the change by then. Category rings are reloaded when the month is.
+     */
+    public void changeEventCount(Calendar day, int delta){
+        eventChanges.post(DayMath.epochDay(day), delta);
+    }
+
+    /**
+     * Same as {@link #changeEventCount(Calendar, int)} for consecutive days.
+     * @param deltas Change of the count of each day, deltas[0] being firstDay's
+     */
+    public void changeEventCounts(Calendar firstDay, int[] deltas){
+        eventChanges.post(DayMath.epochDay(firstDay), deltas, 0, deltas.length);
+    }
+
+    /**
+     * Applies one frame of event count changes to the cached months, and through them to the
+     * pages, weeks and mini-months showing them.
+     */
+    private void applyEventChanges(SparseArray<int[]> deltas){
+        for(int i=0;i<deltas.size();i++){
+            int monthIndex = deltas.keyAt(i);
+            if(eventLoader!=null && eventLoader.isLoading(monthIndex)){
+                // The load in flight may have been answered before the change. It is kept, so
+                // changes every frame cannot starve it, and the month asked again once delivered.
+                eventLoader.reloadOnDelivery(monthIndex);
+                continue;
+            }
+            int[] counts = eventCache.addToCounts(monthIndex, deltas.valueAt(i));
+            if(counts!=null){
+                if(eventSnapshot!=null) eventSnapshot.writeMonth(monthIndex, counts);
+                onEventsLoaded(monthIndex, counts);
+            }else{
+                // Loaded again if shown, otherwise when next bound
+                invalidateEventMonths(monthIndex, monthIndex);
+            }
+        }
+    }
+
+    static final int SNAPSHOT_YEARS = 10;
+
+    EventSnapshot eventSnapshot;
+    private SnapshotRefresher snapshotRefresher;
+
+    /**
+     * Keeps the last known events of the ten years either side of this one in the given file,
+     * about 4 KB, so a new process shows them on its first bind without asking the indicator.
+     * Months read from the file are then loaded from the indicator again, on the event
+     * executor if one is set or else while the main thread is idle, and the file is updated.
+     * The file is mapped into memory on the calling thread. The snapshot used before is
+     * flushed off the main thread.
+     * @param file Snapshot file, null to stop using one
+     */
+    public void setEventSnapshotFile(File file) throws IOException{
+        flushSnapshot();
+        if(file==null){
+            eventSnapshot = null;
+            return;
+        }
+        int firstMonthIndex = DayMath.monthIndex(DayMath.yearOfMonthIndex(todayMonthIndex) - SNAPSHOT_YEARS, Calendar.JANUARY);
+        eventSnapshot = EventSnapshot.open(file, firstMonthIndex, (SNAPSHOT_YEARS*2 + 1) * 12);
+    }
+
+    // Flushes snapshots when there is no event executor, shared by every calendar
+    private static ThreadPoolExecutor snapshotFlusher;
+
+    /**
+     * Writes the snapshot back to its file off the main thread, on the event executor if one
+     * is set, as forcing it out is disk I/O. Nothing is done if it is unchanged since the
+     * last flush.
+     */
+    private void flushSnapshot(){
+        final EventSnapshot snapshot = eventSnapshot;
+        if(snapshot==null || !snapshot.isDirty()) return;
+        Runnable flush = new Runnable() {
+            @Override
+            public void run() {
+                snapshot.flush();
+            }
+        };
+        if(eventLoader!=null){
+            try{
+                eventLoader.executor.execute(flush);
+                return;
+            }catch(RejectedExecutionException e){
+                // Shut down by the app, flushed on the shared thread instead
+            }
+        }
+        getSnapshotFlusher().execute(flush);
+    }
+
+    /**
+     * @return Single thread executor whose thread ends once it has been idle for a second
+     */
+    private static synchronized ThreadPoolExecutor getSnapshotFlusher(){
+        if(snapshotFlusher==null){
+            snapshotFlusher = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, "CalendarView snapshot flush");
+                }
+            });
+            snapshotFlusher.allowCoreThreadTimeOut(true);
+        }
+        return snapshotFlusher;
+    }
+
+    private void refreshFromSnapshot(int monthIndex){
+        if(snapshotRefresher==null){
+            snapshotRefresher = new SnapshotRefresher();
+            Looper.myQueue().addIdleHandler(snapshotRefresher);
+        }
+        if(!snapshotRefresher.months.contains(monthIndex)) snapshotRefresher.months.offer(monthIndex);
+    }
+
+    /**
+     * Loads the months shown from the snapshot from the indicator, one per idle pass.
+     */
+    private class SnapshotRefresher implements MessageQueue.IdleHandler{
+
+        final ArrayDeque<Integer> months = new ArrayDeque<Integer>();
+
+        @Override
+        public boolean queueIdle() {
+            Integer monthIndex = months.poll();
+            // Loaded some other way in the meantime
+            if(monthIndex!=null && eventLoader==null && eventIndicator!=null && !eventCache.contains(monthIndex)){
+                int[] counts = new int[31];
+                getEventMask(monthIndex, counts);
+                onEventsLoaded(monthIndex, counts);
+            }
+            if(!months.isEmpty()) return true;
+            snapshotRefresher = null;
+            return false;
+        }
+    }
+
+    /**
+     * Reloads the events of the weeks shown that overlap the months from first to last.
+     */
+    private void reloadWeekEvents(int firstMonthIndex, int lastMonthIndex){
+        if(calendarWeekAdapter==null) return;
+        SparseArray<CalendarWeekView> liveWeeks = calendarWeekAdapter.liveWeeks;
+        for(int i=0;i<liveWeeks.size();i++){
+            CalendarWeekView week = liveWeeks.valueAt(i);
+            int firstMonth = DayMath.monthIndexOfEpochDay(week.firstEpochDay);
+            int lastMonth = DayMath.monthIndexOfEpochDay(week.firstEpochDay + 6);
+            if(lastMonth>=firstMonthIndex && firstMonth<=lastMonthIndex) week.reloadEvents();
+        }
+    }
+
+    private void reloadEvents(MonthPage page, int monthIndex){
+        if(eventLoader!=null){
+            // Delivered to the live page when it arrives
+            eventLoader.request(monthIndex);
+        }else{
+            int[] counts = new int[31];
+            getEventMask(monthIndex, counts);
+            eventCache.put(monthIndex, counts);
+            page.setEventCounts(counts);
+        }
+    }
+
+    EventLoader eventLoader;
+
+    /**
+     * Loads events on the given executor instead of on the UI thread while months are bound.
+     * Months show without indicators until their events arrive, then only that month is
+     * repainted. The months next to the current one are prefetched and loads for months that
+     * scrolled away are cancelled. The indicator must then be safe to call from the executor.
+     * @param executor Executor to run queries on, null to go back to synchronous loading
+     */
+    public void setEventExecutor(ExecutorService executor){
+        if(eventLoader!=null) eventLoader.cancel(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        eventLoader = executor!=null ? new EventLoader(executor) : null;
+    }
+
+    /**
+     * Runs month event queries in the background and posts the results back to live pages and
+     * the event cache. Only touched from the UI thread except for the query itself.
+     */
+    class EventLoader{
+
+        // Loads for months further than this from the current month are cancelled
+        static final int WINDOW = 2;
+        // Most adjacent months answered by one range query
+        static final int MAX_COALESCED_MONTHS = 3;
+
+        final ExecutorService executor;
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        // Months being loaded, adjacent ones sharing a request
+        final SparseArray<EventRequest> pending = new SparseArray<EventRequest>();
+        // Months asked for since the last submit, sorted by month index
+        final SparseBooleanArray queued = new SparseBooleanArray();
+        // Pending months whose events changed after their load started
+        final SparseBooleanArray changedWhileLoading = new SparseBooleanArray();
+        int currentMonth = todayMonthIndex;
+
+        // Months asked for while binding the pages of one frame go out together
+        final Runnable submitQueued = new Runnable() {
+            @Override
+            public void run() {
+                submitQueued();
+            }
+        };
+
+        EventLoader(ExecutorService executor){
+            this.executor = executor;
+        }
+
+        void prefetch(int monthIndex){
+            if(!eventCache.contains(monthIndex)) request(monthIndex);
+        }
+
+        void request(int monthIndex){
+            if(eventIndicator==null || pending.get(monthIndex)!=null || queued.get(monthIndex)) return;
+            if(queued.size()==0) mainHandler.post(submitQueued);
+            queued.put(monthIndex, true);
+        }
+
+        /**
+         * Submits the queued months, each run of adjacent months as a single range query.
+         */
+        void submitQueued(){
+            int i = 0;
+            while(i<queued.size()){
+                int firstMonthIndex = queued.keyAt(i);
+                int monthCount = 1;
+                while(i+monthCount<queued.size() && monthCount<MAX_COALESCED_MONTHS
+                        && queued.keyAt(i+monthCount)==firstMonthIndex+monthCount) monthCount++;
+                i += monthCount;
+                EventRequest request = new EventRequest(firstMonthIndex, monthCount, eventIndicator, eventSnapshot);
+                for(int month=0;month<monthCount;month++) pending.put(firstMonthIndex + month, request);
+                request.future = executor.submit(request);
+            }
+            queued.clear();
+        }
+
+        boolean isLoading(int monthIndex){
+            return pending.get(monthIndex)!=null;
+        }
+
+        /**
+         * Asks the pending month again once its load is delivered.
+         */
+        void reloadOnDelivery(int monthIndex){
+            if(isLoading(monthIndex)) changedWhileLoading.put(monthIndex, true);
+        }
+
+        void setCurrentMonth(int monthIndex){
+            currentMonth = monthIndex;
+            for(int i=pending.size()-1;i>=0;i--){
+                if(Math.abs(pending.keyAt(i)-monthIndex)>WINDOW) cancelAt(i);
+            }
+            for(int i=queued.size()-1;i>=0;i--){
+                if(Math.abs(queued.keyAt(i)-monthIndex)>WINDOW) queued.removeAt(i);
+            }
+        }
+
+        void deliver(EventRequest request){
+            for(int month=0;month<request.monthCount;month++){
+                int monthIndex = request.firstMonthIndex + month;
+                if(pending.get(monthIndex)!=request) continue; // cancelled or replaced
+                pending.remove(monthIndex);
+                onEventsLoaded(monthIndex, request.counts[month]);
+                if(changedWhileLoading.get(monthIndex)){
+                    // Shown meanwhile, the new load repaints only the days that changed
+                    changedWhileLoading.delete(monthIndex);
+                    request(monthIndex);
+                }
+            }
+        }
+
+        /**
+         * Cancels loads of every month from first to last, both included.
+         */
+        void cancel(int firstMonthIndex, int lastMonthIndex){
+            for(int i=pending.size()-1;i>=0;i--){
+                int monthIndex = pending.keyAt(i);
+                if(monthIndex>=firstMonthIndex && monthIndex<=lastMonthIndex) cancelAt(i);
+            }
+            for(int i=queued.size()-1;i>=0;i--){
+                int monthIndex = queued.keyAt(i);
+                if(monthIndex>=firstMonthIndex && monthIndex<=lastMonthIndex) queued.removeAt(i);
+            }
+        }
+
+        /**
+         * Stops waiting for the pending month, interrupting its query once none of the months
+         * it answers is waited for.
+         */
+        private void cancelAt(int index){
+            EventRequest request = pending.valueAt(index);
+            changedWhileLoading.delete(pending.keyAt(index));
+            pending.removeAt(index);
+            for(int month=0;month<request.monthCount;month++){
+                if(pending.get(request.firstMonthIndex + month)==request) return;
+            }
+            request.future.cancel(true);
+        }
+
+        class EventRequest implements Runnable{
+
+            final int firstMonthIndex;
+            final int monthCount;
+            final EventRangeIndicator indicator;
+            final EventSnapshot snapshot;
+            // Counts of each month, 31 per month
+            final int[][] counts;
+            Future<?> future;
+
+            EventRequest(int firstMonthIndex, int monthCount, EventRangeIndicator indicator, EventSnapshot snapshot){
+                this.firstMonthIndex = firstMonthIndex;
+                this.monthCount = monthCount;
+                this.indicator = indicator;
+                this.snapshot = snapshot;
+                counts = new int[monthCount][31];
+            }
+
+            @Override
+            public void run() {
+                CalendarMetricsListener metrics = metricsListener;
+                long start = metrics!=null ? System.nanoTime() : 0;
+                int firstEpochDay = DayMath.firstEpochDayOfMonth(firstMonthIndex);
+                int dayCount = DayMath.firstEpochDayOfMonth(firstMonthIndex + monthCount) - firstEpochDay;
+                int[] rangeCounts = monthCount==1 ? counts[0] : new int[dayCount];
+                indicator.getEventCounts(DayMath.monthToCalendar(firstMonthIndex), dayCount, rangeCounts);
+                if(metrics!=null) metrics.onEventLookup(System.nanoTime() - start, dayCount);
+                if(Thread.interrupted()) return;
+                for(int month=0;month<monthCount;month++){
+                    int monthIndex = firstMonthIndex + month;
+                    if(monthCount>1){
+                        System.arraycopy(rangeCounts, DayMath.firstEpochDayOfMonth(monthIndex) - firstEpochDay,
+                                counts[month], 0, MonthLayout.get(monthIndex).daysInMonth);
+                    }
+                    if(snapshot!=null) snapshot.writeMonth(monthIndex, counts[month]);
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver(EventRequest.this);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Counts of months missing from the event cache: the async loader is asked if one is set,
+     * else the indicator, with the snapshot's last known counts shown until it answers.
+     */
+    private final MonthEventCache.Source eventSource = new MonthEventCache.Source() {
+        @Override
+        public boolean fillCounts(int monthIndex, int[] counts) {
+            if(eventLoader!=null) eventLoader.request(monthIndex);
+            // Last known counts until the live source answers, the async loader already asked it
+            if(eventSnapshot!=null && eventIndicator!=null && eventSnapshot.readMonth(monthIndex, counts)){
+                if(eventLoader==null) refreshFromSnapshot(monthIndex);
+                return false;
+            }
+            if(eventLoader!=null) return false;
+            getEventMask(monthIndex, counts);
+            return true;
+        }
+    };
+
+    /**
+     * Fills in the month's event counts from the event cache, or else from the async loader
+     * if one is set or the indicator.
+     * @return Mask of the days with events, 0 while an async load is in flight
+     */
+    private int loadEventMask(int monthIndex,int[] counts){
+        return eventCache.load(monthIndex, counts, eventSource);
+    }
+
+    public static interface EventIndicator{
+        public boolean hasEvent(Calendar day);
+    }
+
+    public static interface EventRangeIndicator{
+        /**
+         * Fills in the number of events for each day of the range [firstDay, firstDay+dayCount).
+         * @param firstDay First day of the range, at midnight. Must not be kept or modified.
+         * @param dayCount Number of days in the range
+         * @param counts Zeroed array of at least dayCount length, counts[0] is firstDay
+         */
+        public void getEventCounts(Calendar firstDay, int dayCount, int[] counts);
+    }
+
+    /**
+     * Answers range queries with one {@link EventIndicator#hasEvent(Calendar)} call per day.
+     */
+    public static class EventIndicatorAdapter implements EventRangeIndicator{
+
+        private final EventIndicator indicator;
+
+        public EventIndicatorAdapter(EventIndicator indicator){
+            this.indicator = indicator;
+        }
+
+        @Override
+        public void getEventCounts(Calendar firstDay, int dayCount, int[] counts) {
+            for(int i=0;i<dayCount;i++){
+                // Each call gets its own instance as it always has
+                Calendar day = (Calendar) firstDay.clone();
+                day.add(Calendar.DAY_OF_MONTH, i);
+                counts[i] = indicator.hasEvent(day) ? 1 : 0;
+            }
+        }
+    }
+
+    /**
+     * Loads the events of a whole month with one range query.
+     * @param monthIndex Month to load, see {@link DayMath}
+     * @param counts Receives the event count of each day, at least 31 long
+     * @return Mask with bit (day-1) set for every day of the month that has an event
+     */
+    private int getEventMask(int monthIndex,int[] counts){
+        Arrays.fill(counts, 0);
+        if(eventIndicator==null) return 0;
+        CalendarMetricsListener metrics = metricsListener;
+        long start = metrics!=null ? System.nanoTime() : 0;
+        int daysInMonth = MonthLayout.get(monthIndex).daysInMonth;
+        eventIndicator.getEventCounts(DayMath.monthToCalendar(monthIndex), daysInMonth, counts);
+        if(metrics!=null) metrics.onEventLookup(System.nanoTime() - start, daysInMonth);
+        if(eventSnapshot!=null) eventSnapshot.writeMonth(monthIndex, counts);
+        return MonthBinding.getEventMask(counts, daysInMonth);
+    }
+
+    public static boolean sameDay(Calendar first,Calendar second){
+        return DayMath.sameDay(first, second);
+    }
+
+    /**
+     * @return Rows of the month with weeks starting on the calendar's first day of week
+     */
+    public static int getRowsForMonth(Calendar month,boolean hasTitle,boolean hasDaysOfWeek){
+        int firstDayOfWeek = month.getFirstDayOfWeek() - Calendar.SUNDAY;
+        return MonthLayout.get(DayMath.monthIndex(month), firstDayOfWeek).getRows(hasTitle, hasDaysOfWeek);
+    }
+
+    static int getRowsForMonth(int monthIndex,boolean hasTitle,boolean hasDaysOfWeek){
+        return MonthLayout.get(monthIndex).getRows(hasTitle, hasDaysOfWeek);
+    }
+
+    private int getRowsForMonth(int monthIndex){
+        return getMonthLayout(monthIndex).getRows(showMonthTitle, showDaysOfWeekRow);
+    }
+
+    /**
+     * @return Layout of the month in weeks starting on the locale's first day of week
+     */
+    MonthLayout getMonthLayout(int monthIndex){
+        return MonthLayout.get(monthIndex, calendarLocale.firstDayOfWeek);
     }
 
-    private static String getTitleForMonth(Calendar calendar,boolean includeYear){
-        SimpleDateFormat formatMonth = new SimpleDateFormat("MMMM"+(includeYear ? " yyyy" : ""), Locale.ENGLISH);
-        return formatMonth.format(calendar.getTime());
+    private String getTitleForMonth(int monthIndex,boolean includeYear){
+        return calendarLocale.monthTitle(monthIndex, includeYear);
     }
 
 }
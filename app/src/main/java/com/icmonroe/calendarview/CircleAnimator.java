@@ -0,0 +1,50 @@
+package com.icmonroe.calendarview;
+
+import java.util.ArrayList;
+
+/**
+ * Drives every running {@link AdaptableCircleView} percentage animation from one callback per
+ * display frame, using the frame's real timestamp. Used from the UI thread only.
+ */
+final class CircleAnimator implements FrameScheduler.Callback {
+
+    private static CircleAnimator instance;
+
+    static CircleAnimator get(){
+        if(instance==null) instance = new CircleAnimator();
+        return instance;
+    }
+
+    private final ArrayList<AdaptableCircleView> active = new ArrayList<AdaptableCircleView>();
+    private final FrameScheduler frameScheduler = FrameScheduler.create(this);
+    private boolean frameScheduled;
+
+    private CircleAnimator(){}
+
+    void start(AdaptableCircleView view){
+        if(!active.contains(view)) active.add(view);
+        if(!frameScheduled){
+            frameScheduled = true;
+            frameScheduler.postFrame();
+        }
+    }
+
+    void cancel(AdaptableCircleView view){
+        active.remove(view);
+    }
+
+    /**
+     * Steps every active animation to the frame time, dropping the ones that finished.
+     */
+    @Override
+    public void doFrame(long frameTimeMillis){
+        frameScheduled = false;
+        for(int i=active.size()-1;i>=0;i--){
+            if(i<active.size() && !active.get(i).animationFrame(frameTimeMillis)) active.remove(i);
+        }
+        if(!active.isEmpty()){
+            frameScheduled = true;
+            frameScheduler.postFrame();
+        }
+    }
+}
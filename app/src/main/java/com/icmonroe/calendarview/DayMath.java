@@ -0,0 +1,183 @@
+package com.icmonroe.calendarview;
+
+import java.util.Calendar;
+
+/**
+ * Date math on primitives so that binding days and months never has to build a Calendar.
+ *
+ * Days are represented as an epoch day, the number of days since 1970-01-01, and months as a
+ * month index, year*12 + month where month is zero based like {@link Calendar#MONTH}. Dates
+ * follow the proleptic Gregorian calendar.
+ */
+final class DayMath {
+
+    private DayMath(){}
+
+    // 1970-01-01 was a Thursday, Sunday being 0
+    private static final int EPOCH_DAY_OF_WEEK = 4;
+
+    private static final int[] DAYS_IN_MONTH = {31,28,31,30,31,30,31,31,30,31,30,31};
+
+    // Day of month labels, index 0 unused
+    private static final String[] DAY_LABELS = new String[32];
+    static {
+        for(int i=1;i<DAY_LABELS.length;i++) DAY_LABELS[i] = Integer.toString(i);
+    }
+
+    public static boolean isLeapYear(int year){
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    public static int daysInMonth(int year, int month){
+        return month==Calendar.FEBRUARY && isLeapYear(year) ? 29 : DAYS_IN_MONTH[month];
+    }
+
+    public static int monthIndex(int year, int month){
+        return year*12 + month;
+    }
+
+    public static int yearOfMonthIndex(int monthIndex){
+        return floorDiv(monthIndex, 12);
+    }
+
+    public static int monthOfMonthIndex(int monthIndex){
+        return floorMod(monthIndex, 12);
+    }
+
+    public static int daysInMonth(int monthIndex){
+        return daysInMonth(yearOfMonthIndex(monthIndex), monthOfMonthIndex(monthIndex));
+    }
+
+    /**
+     * @return Shared label of a one based day of month, so binding a day builds no string
+     */
+    public static String dayOfMonthLabel(int dayOfMonth){
+        return DAY_LABELS[dayOfMonth];
+    }
+
+    /**
+     * @param month Zero based month
+     * @param dayOfMonth One based day of month
+     * @return Days since 1970-01-01
+     */
+    public static int epochDay(int year, int month, int dayOfMonth){
+        // Days from civil, with March as the first month of the computational year
+        int y = month < Calendar.MARCH ? year - 1 : year;
+        int era = floorDiv(y, 400);
+        int yearOfEra = y - era*400;
+        int shiftedMonth = (month + 10) % 12;
+        int dayOfYear = (153*shiftedMonth + 2)/5 + dayOfMonth - 1;
+        int dayOfEra = yearOfEra*365 + yearOfEra/4 - yearOfEra/100 + dayOfYear;
+        return era*146097 + dayOfEra - 719468;
+    }
+
+    public static int firstEpochDayOfMonth(int monthIndex){
+        return epochDay(yearOfMonthIndex(monthIndex), monthOfMonthIndex(monthIndex), 1);
+    }
+
+    /**
+     * @return Month index of the month the day falls in
+     */
+    public static int monthIndexOfEpochDay(int epochDay){
+        int z = epochDay + 719468;
+        int era = floorDiv(z, 146097);
+        int dayOfEra = z - era*146097;
+        int yearOfEra = (dayOfEra - dayOfEra/1460 + dayOfEra/36524 - dayOfEra/146096) / 365;
+        int dayOfYear = dayOfEra - (365*yearOfEra + yearOfEra/4 - yearOfEra/100);
+        int shiftedMonth = (5*dayOfYear + 2)/153;
+        int month = shiftedMonth < 10 ? shiftedMonth + 2 : shiftedMonth - 10;
+        int year = yearOfEra + era*400 + (month < Calendar.MARCH ? 1 : 0);
+        return monthIndex(year, month);
+    }
+
+    public static int dayOfMonthOfEpochDay(int epochDay){
+        return epochDay - firstEpochDayOfMonth(monthIndexOfEpochDay(epochDay)) + 1;
+    }
+
+    /**
+     * @return Day of week with Sunday as 0 through Saturday as 6
+     */
+    public static int dayOfWeek(int epochDay){
+        return floorMod(epochDay + EPOCH_DAY_OF_WEEK, 7);
+    }
+
+    /**
+     * @return Number of blank cells before the first day of the month in a week starting Sunday
+     */
+    public static int daysBeforeFirstDay(int monthIndex){
+        return daysBeforeFirstDay(monthIndex, 0);
+    }
+
+    /**
+     * @param firstDayOfWeek First day of the week, Sunday being 0
+     * @return Number of blank cells before the first day of the month
+     */
+    public static int daysBeforeFirstDay(int monthIndex, int firstDayOfWeek){
+        return floorMod(dayOfWeek(firstEpochDayOfMonth(monthIndex)) - firstDayOfWeek, 7);
+    }
+
+    /**
+     * @param firstDayOfWeek First day of the week, Sunday being 0
+     * @return Index of the week the day falls in. Week 0 holds 1970-01-01.
+     */
+    public static int weekIndex(int epochDay, int firstDayOfWeek){
+        return floorDiv(epochDay + EPOCH_DAY_OF_WEEK - firstDayOfWeek, 7);
+    }
+
+    /**
+     * @return Epoch day of the first day of the week
+     */
+    public static int firstEpochDayOfWeek(int weekIndex, int firstDayOfWeek){
+        return weekIndex*7 - EPOCH_DAY_OF_WEEK + firstDayOfWeek;
+    }
+
+    // Math.floorDiv and floorMod are not available on older platforms
+    private static int floorDiv(int x, int y){
+        int q = x / y;
+        return (x % y != 0 && ((x ^ y) < 0)) ? q - 1 : q;
+    }
+
+    private static int floorMod(int x, int y){
+        return x - floorDiv(x, y)*y;
+    }
+
+    public static boolean sameDay(Calendar first, Calendar second){
+        return first.get(Calendar.DAY_OF_YEAR)==second.get(Calendar.DAY_OF_YEAR)
+                && first.get(Calendar.YEAR)==second.get(Calendar.YEAR);
+    }
+
+    public static int epochDay(Calendar calendar){
+        return epochDay(
+                calendar.get(Calendar.YEAR),
+                calendar.get(Calendar.MONTH),
+                calendar.get(Calendar.DAY_OF_MONTH)
+        );
+    }
+
+    public static int monthIndex(Calendar calendar){
+        return monthIndex(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH));
+    }
+
+    /**
+     * @return A new Calendar at midnight of the given day
+     */
+    public static Calendar toCalendar(int epochDay){
+        int monthIndex = monthIndexOfEpochDay(epochDay);
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(
+                yearOfMonthIndex(monthIndex),
+                monthOfMonthIndex(monthIndex),
+                epochDay - firstEpochDayOfMonth(monthIndex) + 1,
+                0,0,0
+        );
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar;
+    }
+
+    /**
+     * @return A new Calendar at midnight of the first day of the given month
+     */
+    public static Calendar monthToCalendar(int monthIndex){
+        return toCalendar(firstEpochDayOfMonth(monthIndex));
+    }
+}
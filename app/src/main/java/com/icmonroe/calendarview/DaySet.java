@@ -0,0 +1,175 @@
+package com.icmonroe.calendarview;
+
+import java.util.Arrays;
+
+/**
+ * Set of days keyed by epoch day, stored as one 31 bit mask per month in an open addressing
+ * hash table keyed by month index. Membership is a hash lookup and a bit test however many
+ * days are in the set, and a range costs one mask update per month it spans. Not thread safe.
+ */
+final class DaySet {
+
+    // No month index used by the calendar is this low, marks a free slot
+    private static final int FREE = Integer.MIN_VALUE;
+
+    private int[] keys;
+    private int[] masks;
+    // Slots taken, including months whose mask went back to 0
+    private int used;
+    private int size;
+
+    DaySet(){
+        allocate(16);
+    }
+
+    private void allocate(int capacity){
+        keys = new int[capacity];
+        masks = new int[capacity];
+        Arrays.fill(keys, FREE);
+        used = 0;
+    }
+
+    /**
+     * @return Number of days in the set
+     */
+    int size(){
+        return size;
+    }
+
+    boolean isEmpty(){
+        return size==0;
+    }
+
+    boolean contains(int epochDay){
+        int monthIndex = DayMath.monthIndexOfEpochDay(epochDay);
+        int dayOfMonth = epochDay - DayMath.firstEpochDayOfMonth(monthIndex) + 1;
+        return (getMonthMask(monthIndex) & (1<<(dayOfMonth-1)))!=0;
+    }
+
+    /**
+     * @return Mask with bit (day-1) set for every day of the month in the set
+     */
+    int getMonthMask(int monthIndex){
+        int slot = find(monthIndex);
+        return keys[slot]==monthIndex ? masks[slot] : 0;
+    }
+
+    boolean add(int epochDay){
+        return addRange(epochDay, epochDay)==1;
+    }
+
+    boolean remove(int epochDay){
+        return removeRange(epochDay, epochDay)==1;
+    }
+
+    /**
+     * Adds every day from first to last, both included.
+     * @return Number of days that were not in the set before
+     */
+    int addRange(int firstEpochDay, int lastEpochDay){
+        return updateRange(firstEpochDay, lastEpochDay, true);
+    }
+
+    /**
+     * Removes every day from first to last, both included.
+     * @return Number of days that were in the set before
+     */
+    int removeRange(int firstEpochDay, int lastEpochDay){
+        return updateRange(firstEpochDay, lastEpochDay, false);
+    }
+
+    private int updateRange(int firstEpochDay, int lastEpochDay, boolean add){
+        if(lastEpochDay<firstEpochDay) return 0;
+        int changed = 0;
+        int firstMonth = DayMath.monthIndexOfEpochDay(firstEpochDay);
+        int lastMonth = DayMath.monthIndexOfEpochDay(lastEpochDay);
+        for(int monthIndex=firstMonth;monthIndex<=lastMonth;monthIndex++){
+            int firstDayOfMonth = DayMath.firstEpochDayOfMonth(monthIndex);
+            int from = monthIndex==firstMonth ? firstEpochDay - firstDayOfMonth : 0;
+            int to = monthIndex==lastMonth ? lastEpochDay - firstDayOfMonth : DayMath.daysInMonth(monthIndex) - 1;
+            // Bits from..to, to being at most 30
+            int bits = ((1<<(to - from + 1)) - 1) << from;
+            changed += setMonthBits(monthIndex, bits, add);
+        }
+        return changed;
+    }
+
+    private int setMonthBits(int monthIndex, int bits, boolean add){
+        int slot = find(monthIndex);
+        if(keys[slot]!=monthIndex){
+            if(!add) return 0;
+            if((used+1)*2>keys.length){
+                rehash();
+                slot = find(monthIndex);
+            }
+            keys[slot] = monthIndex;
+            masks[slot] = 0;
+            used++;
+        }
+        int mask = masks[slot];
+        int updated = add ? mask | bits : mask & ~bits;
+        int changed = Integer.bitCount(mask ^ updated);
+        masks[slot] = updated;
+        size += add ? changed : -changed;
+        return changed;
+    }
+
+    void clear(){
+        allocate(16);
+        size = 0;
+    }
+
+    /**
+     * @return Every day in the set in ascending order
+     */
+    int[] toEpochDays(){
+        int months = 0;
+        int[] monthIndexes = new int[used];
+        for(int i=0;i<keys.length;i++){
+            if(keys[i]!=FREE && masks[i]!=0) monthIndexes[months++] = keys[i];
+        }
+        Arrays.sort(monthIndexes, 0, months);
+        int[] days = new int[size];
+        int count = 0;
+        for(int i=0;i<months;i++){
+            int firstDayOfMonth = DayMath.firstEpochDayOfMonth(monthIndexes[i]);
+            for(int mask=getMonthMask(monthIndexes[i]);mask!=0;mask&=mask-1){
+                days[count++] = firstDayOfMonth + Integer.numberOfTrailingZeros(mask);
+            }
+        }
+        return days;
+    }
+
+    /**
+     * @return Slot holding the month, or the free slot it would go in
+     */
+    private int find(int monthIndex){
+        int last = keys.length - 1;
+        int slot = (monthIndex * 0x9E3779B9) >>> 16 & last;
+        while(keys[slot]!=FREE && keys[slot]!=monthIndex) slot = (slot + 1) & last;
+        return slot;
+    }
+
+    /**
+     * Grows the table if it is mostly months in the set, dropping months left empty.
+     */
+    private void rehash(){
+        int[] oldKeys = keys;
+        int[] oldMasks = masks;
+        int months = 0;
+        for(int i=0;i<oldKeys.length;i++){
+            if(oldKeys[i]!=FREE && oldMasks[i]!=0) months++;
+        }
+        int capacity = 16;
+        while(capacity<(months+1)*4) capacity <<= 1;
+        allocate(capacity);
+        for(int i=0;i<oldKeys.length;i++){
+            if(oldKeys[i]!=FREE && oldMasks[i]!=0){
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                masks[slot] = oldMasks[i];
+                used++;
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.icmonroe.calendarview;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
+
+/**
+ * Changes of per day event counts posted from any thread, added up per month until the next
+ * display frame, when the UI thread gets all of them as one batch. However many changes are
+ * posted, there is at most one batch per frame.
+ */
+final class EventChangeQueue implements FrameScheduler.Callback {
+
+    interface Listener{
+        /**
+         * Called on the UI thread.
+         * @param deltas Change of each day's count by month index, 31 days per month
+         */
+        void onEventCountsChanged(SparseArray<int[]> deltas);
+    }
+
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final FrameScheduler frameScheduler = FrameScheduler.create(this);
+    // Guarded by this
+    private SparseArray<int[]> pending = new SparseArray<int[]>();
+    private boolean frameScheduled;
+
+    // Choreographer is per thread, the frame is always asked for on the UI thread
+    private final Runnable postFrame = new Runnable() {
+        @Override
+        public void run() {
+            frameScheduler.postFrame();
+        }
+    };
+
+    EventChangeQueue(Listener listener){
+        this.listener = listener;
+    }
+
+    private final int[] singleDelta = new int[1];
+
+    void post(int epochDay, int delta){
+        synchronized (this){
+            singleDelta[0] = delta;
+            post(epochDay, singleDelta, 0, 1);
+        }
+    }
+
+    /**
+     * Adds deltas[offset+i] to the count of day firstEpochDay+i, for length days.
+     */
+    void post(int firstEpochDay, int[] deltas, int offset, int length){
+        synchronized (this){
+            for(int i=0;i<length;){
+                int epochDay = firstEpochDay + i;
+                int monthIndex = DayMath.monthIndexOfEpochDay(epochDay);
+                int dayOfMonth = epochDay - DayMath.firstEpochDayOfMonth(monthIndex) + 1;
+                int days = Math.min(length - i, DayMath.daysInMonth(monthIndex) - dayOfMonth + 1);
+                int[] monthDeltas = pending.get(monthIndex);
+                if(monthDeltas==null){
+                    monthDeltas = new int[31];
+                    pending.put(monthIndex, monthDeltas);
+                }
+                for(int day=0;day<days;day++) monthDeltas[dayOfMonth - 1 + day] += deltas[offset + i + day];
+                i += days;
+            }
+            if(frameScheduled) return;
+            frameScheduled = true;
+        }
+        if(Looper.myLooper()==Looper.getMainLooper()) frameScheduler.postFrame();
+        else mainHandler.post(postFrame);
+    }
+
+    @Override
+    public void doFrame(long frameTimeMillis) {
+        SparseArray<int[]> deltas;
+        synchronized (this){
+            deltas = pending;
+            pending = new SparseArray<int[]>();
+            frameScheduled = false;
+        }
+        if(deltas.size()>0) listener.onEventCountsChanged(deltas);
+    }
+}
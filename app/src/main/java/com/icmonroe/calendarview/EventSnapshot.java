@@ -0,0 +1,183 @@
+package com.icmonroe.calendarview;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Per day event counts of a range of months kept in a small file and read through a memory
+ * mapped buffer, so a new process can show the last known events before asking the live
+ * source. Each day takes four bits, counts saturating at 15, and each month 16 bytes, about
+ * 2 KB per decade. Months never written are told apart from months without events. Safe to
+ * use from any thread.
+ *
+ * The file is a header of magic, version, first month index and month count, then one bit
+ * per month marking it written, then the months.
+ */
+final class EventSnapshot {
+
+    private static final int MAGIC = 0x43564553; // "CVES"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    static final int MONTH_BYTES = 16;
+    static final int MAX_COUNT = 15;
+
+    private final MappedByteBuffer buffer;
+    final int firstMonthIndex;
+    final int monthCount;
+    private final int monthsOffset;
+    // Changed since the last flush
+    private boolean dirty;
+
+    private EventSnapshot(MappedByteBuffer buffer, int firstMonthIndex, int monthCount){
+        this.buffer = buffer;
+        this.firstMonthIndex = firstMonthIndex;
+        this.monthCount = monthCount;
+        monthsOffset = HEADER_BYTES + writtenBytes(monthCount);
+    }
+
+    private static int writtenBytes(int monthCount){
+        // Rounded up to keep the months four byte aligned
+        return ((monthCount + 31) / 32) * 4;
+    }
+
+    private static int fileBytes(int monthCount){
+        return HEADER_BYTES + writtenBytes(monthCount) + monthCount*MONTH_BYTES;
+    }
+
+    /**
+     * Maps the snapshot file, creating it if needed. A file covering other months is rebuilt
+     * for the new range, keeping the months both ranges cover.
+     */
+    static EventSnapshot open(File file, int firstMonthIndex, int monthCount) throws IOException{
+        byte[] previous = null;
+        if(file.exists()){
+            RandomAccessFile existing = new RandomAccessFile(file, "r");
+            try{
+                if(existing.length()>=HEADER_BYTES && existing.length()<=Integer.MAX_VALUE){
+                    previous = new byte[(int) existing.length()];
+                    existing.readFully(previous);
+                }
+            }finally{
+                existing.close();
+            }
+        }
+        int bytes = fileBytes(monthCount);
+        EventSnapshot snapshot;
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try{
+            // A mapping stays valid once its channel is closed
+            FileChannel channel = randomAccessFile.getChannel();
+            snapshot = new EventSnapshot(channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes), firstMonthIndex, monthCount);
+            if(!snapshot.matches(previous, bytes)){
+                snapshot.reset();
+                if(previous!=null) snapshot.copyFrom(ByteBuffer.wrap(previous));
+                snapshot.dirty = true;
+            }
+            randomAccessFile.setLength(bytes);
+        }finally{
+            randomAccessFile.close();
+        }
+        return snapshot;
+    }
+
+    private boolean matches(byte[] previous, int bytes){
+        if(previous==null || previous.length!=bytes) return false;
+        return buffer.getInt(0)==MAGIC && buffer.getInt(4)==VERSION
+                && buffer.getInt(8)==firstMonthIndex && buffer.getInt(12)==monthCount;
+    }
+
+    private void reset(){
+        for(int i=0;i<buffer.capacity();i++) buffer.put(i, (byte) 0);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, firstMonthIndex);
+        buffer.putInt(12, monthCount);
+    }
+
+    /**
+     * Copies the written months of an older snapshot that this one also covers.
+     */
+    private void copyFrom(ByteBuffer old){
+        if(old.capacity()<HEADER_BYTES || old.getInt(0)!=MAGIC || old.getInt(4)!=VERSION) return;
+        EventSnapshot previous = new EventSnapshot(null, old.getInt(8), old.getInt(12));
+        if(old.capacity()!=fileBytes(previous.monthCount)) return;
+        int first = Math.max(firstMonthIndex, previous.firstMonthIndex);
+        int last = Math.min(firstMonthIndex + monthCount, previous.firstMonthIndex + previous.monthCount) - 1;
+        for(int monthIndex=first;monthIndex<=last;monthIndex++){
+            int oldMonth = monthIndex - previous.firstMonthIndex;
+            if((old.getInt(HEADER_BYTES + (oldMonth>>>5)*4) & (1<<(oldMonth & 31)))==0) continue;
+            int from = previous.monthsOffset + oldMonth*MONTH_BYTES;
+            int to = monthsOffset + (monthIndex - firstMonthIndex)*MONTH_BYTES;
+            for(int i=0;i<MONTH_BYTES;i++) buffer.put(to + i, old.get(from + i));
+            markWritten(monthIndex - firstMonthIndex);
+        }
+    }
+
+    int sizeBytes(){
+        return buffer.capacity();
+    }
+
+    boolean covers(int monthIndex){
+        return monthIndex>=firstMonthIndex && monthIndex<firstMonthIndex+monthCount;
+    }
+
+    /**
+     * Reads the month's counts straight from the mapped file.
+     * @param counts Receives the count of each day, at least 31 long
+     * @return Whether the month was written, counts being left alone if not
+     */
+    synchronized boolean readMonth(int monthIndex, int[] counts){
+        if(!covers(monthIndex)) return false;
+        int month = monthIndex - firstMonthIndex;
+        if((buffer.getInt(HEADER_BYTES + (month>>>5)*4) & (1<<(month & 31)))==0) return false;
+        int offset = monthsOffset + month*MONTH_BYTES;
+        for(int i=0;i<31;i++){
+            int packed = buffer.get(offset + (i>>>1));
+            counts[i] = (i & 1)==0 ? packed & 0x0F : (packed >>> 4) & 0x0F;
+        }
+        return true;
+    }
+
+    /**
+     * Stores the month's counts, saturated at {@value #MAX_COUNT}. Only touches the mapped
+     * memory, the system writes it back to the file in the background.
+     */
+    synchronized void writeMonth(int monthIndex, int[] counts){
+        if(!covers(monthIndex)) return;
+        int month = monthIndex - firstMonthIndex;
+        int offset = monthsOffset + month*MONTH_BYTES;
+        for(int i=0;i<MONTH_BYTES;i++){
+            int low = i*2<31 ? Math.min(counts[i*2], MAX_COUNT) : 0;
+            int high = i*2+1<31 ? Math.min(counts[i*2+1], MAX_COUNT) : 0;
+            buffer.put(offset + i, (byte) (low | (high << 4)));
+        }
+        markWritten(month);
+    }
+
+    private void markWritten(int month){
+        int offset = HEADER_BYTES + (month>>>5)*4;
+        buffer.putInt(offset, buffer.getInt(offset) | (1<<(month & 31)));
+        dirty = true;
+    }
+
+    /**
+     * @return Whether a month was written since the last flush
+     */
+    synchronized boolean isDirty(){
+        return dirty;
+    }
+
+    /**
+     * Writes changes back to the file now rather than whenever the system does, if there are
+     * any since the last flush.
+     */
+    synchronized void flush(){
+        if(!dirty) return;
+        buffer.force();
+        dirty = false;
+    }
+}
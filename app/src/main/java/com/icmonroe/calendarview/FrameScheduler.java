@@ -0,0 +1,78 @@
+package com.icmonroe.calendarview;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+/**
+ * Calls back on the next display frame with the frame's time, through Choreographer from
+ * Jelly Bean on. Used from the UI thread only.
+ */
+abstract class FrameScheduler {
+
+    interface Callback{
+        void doFrame(long frameTimeMillis);
+    }
+
+    final Callback callback;
+
+    private FrameScheduler(Callback callback){
+        this.callback = callback;
+    }
+
+    static FrameScheduler create(Callback callback){
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                ? new ChoreographerScheduler(callback)
+                : new HandlerScheduler(callback);
+    }
+
+    /**
+     * Calls the callback once on the next frame, once per call.
+     */
+    abstract void postFrame();
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class ChoreographerScheduler extends FrameScheduler implements Choreographer.FrameCallback{
+
+        ChoreographerScheduler(Callback callback){
+            super(callback);
+        }
+
+        @Override
+        void postFrame() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            callback.doFrame(frameTimeNanos / 1000000);
+        }
+    }
+
+    /**
+     * Before Choreographer there is no frame callback, so tick about once a frame and still
+     * pass the time that really passed.
+     */
+    private static final class HandlerScheduler extends FrameScheduler implements Runnable{
+
+        private static final long FRAME_DELAY = 16;
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        HandlerScheduler(Callback callback){
+            super(callback);
+        }
+
+        @Override
+        void postFrame() {
+            handler.postDelayed(this, FRAME_DELAY);
+        }
+
+        @Override
+        public void run() {
+            callback.doFrame(SystemClock.uptimeMillis());
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.icmonroe.calendarview;
+
+import java.util.Arrays;
+
+/**
+ * What a month page shows, apart from how it draws it: the month's layout and title, the
+ * days with events, the selected days and today. Both month pages keep one and repaint only
+ * the days its setters report as changed. Days are days of the month, bit (day-1) in a mask.
+ */
+final class MonthBinding {
+
+    // How a day is shown, today over selected over having an event
+    static final int DAY_PLAIN = 0;
+    static final int DAY_EVENT = 1;
+    static final int DAY_SELECTED = 2;
+    static final int DAY_TODAY = 3;
+
+    MonthLayout layout;
+    // Locale of the title and of the layout's first day of week
+    CalendarLocale locale;
+    String title;
+    // Day of month of today, -1 when today is in another month
+    int todayOfMonth = -1;
+    // Day of month of the single selection
+    int selectedDayOfMonth = 1;
+    int eventMask;
+    final int[] eventCounts = new int[31];
+    // Days in the multiple or range selection
+    int selectionMask;
+    // Bound without events
+    boolean placeholder;
+
+    /**
+     * Binds a month, with no events when it is a placeholder. The single selection starts
+     * over on the first day.
+     * @param layout Layout of the month with weeks starting on the locale's first day of week
+     */
+    void bind(MonthLayout layout, CalendarLocale locale, boolean includeYearInTitle, int todayEpochDay, int selectionMask, boolean placeholder){
+        this.layout = layout;
+        this.locale = locale;
+        this.title = locale.monthTitle(layout.monthIndex, includeYearInTitle);
+        this.todayOfMonth = layout.contains(todayEpochDay) ? layout.dayOfMonth(todayEpochDay) : -1;
+        this.selectionMask = selectionMask;
+        this.placeholder = placeholder;
+        selectedDayOfMonth = 1;
+        if(placeholder){
+            eventMask = 0;
+            Arrays.fill(eventCounts, 0);
+        }
+    }
+
+    /**
+     * @return Whether the month is bound in the locale, as a rebind would show it
+     */
+    boolean isBoundTo(int monthIndex, CalendarLocale locale){
+        return layout!=null && layout.monthIndex==monthIndex && this.locale==locale;
+    }
+
+    /**
+     * Takes the events loaded into {@link #eventCounts}, ending a placeholder.
+     * @param eventMask Days of those counts that have events
+     */
+    void bindEvents(int eventMask){
+        this.eventMask = eventMask;
+        placeholder = false;
+    }
+
+    /**
+     * @param counts New count of each day, 31 long
+     * @param countsShown Whether days show their count, else only whether they have events
+     * @return Days that look different, those whose count or else whose having events changed
+     */
+    int setEventCounts(int[] counts, boolean countsShown){
+        int previousMask = eventMask;
+        int changed = getChangedDays(eventCounts, counts);
+        System.arraycopy(counts, 0, eventCounts, 0, eventCounts.length);
+        eventMask = getEventMask(eventCounts, layout.daysInMonth);
+        return countsShown ? changed : previousMask ^ eventMask;
+    }
+
+    /**
+     * @return Days that joined or left the selection
+     */
+    int setSelectionMask(int mask){
+        int changed = selectionMask ^ mask;
+        selectionMask = mask;
+        return changed;
+    }
+
+    /**
+     * Moves the single selection.
+     * @return Day of month selected before
+     */
+    int selectDay(int dayOfMonth){
+        int previous = selectedDayOfMonth;
+        selectedDayOfMonth = dayOfMonth;
+        return previous;
+    }
+
+    /**
+     * @return Day of month in the grid cell, 0 or less before the first day
+     */
+    int dayOfCell(int cell){
+        return cell + 1 - layout.daysBeforeFirstDay;
+    }
+
+    boolean hasEvent(int dayOfMonth){
+        return (eventMask & (1<<(dayOfMonth-1)))!=0;
+    }
+
+    /**
+     * @param single Whether only the single selection is shown, else the selection mask
+     */
+    boolean isSelected(int dayOfMonth, boolean single){
+        if(!single) return (selectionMask & (1<<(dayOfMonth-1)))!=0;
+        return dayOfMonth==selectedDayOfMonth;
+    }
+
+    /**
+     * @return One of the DAY_ constants
+     */
+    int dayState(int dayOfMonth, boolean single){
+        if(dayOfMonth==todayOfMonth) return DAY_TODAY;
+        if(isSelected(dayOfMonth, single)) return DAY_SELECTED;
+        return hasEvent(dayOfMonth) ? DAY_EVENT : DAY_PLAIN;
+    }
+
+    /**
+     * @return Mask with bit (day-1) set for every day whose count differs
+     */
+    static int getChangedDays(int[] oldCounts, int[] newCounts){
+        int changed = 0;
+        for(int i=0;i<31;i++){
+            if(oldCounts[i]!=newCounts[i]) changed |= 1<<i;
+        }
+        return changed;
+    }
+
+    /**
+     * @return Mask with bit (day-1) set for every day with a positive count
+     */
+    static int getEventMask(int[] counts, int daysInMonth){
+        int mask = 0;
+        for(int i=0;i<daysInMonth;i++){
+            if(counts[i]>0) mask |= 1<<i;
+        }
+        return mask;
+    }
+}
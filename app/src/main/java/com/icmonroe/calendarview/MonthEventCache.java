@@ -0,0 +1,143 @@
+package com.icmonroe.calendarview;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of per day event counts, one entry per month, bounded by an
+ * approximate memory budget. Safe to use from any thread.
+ */
+final class MonthEventCache {
+
+    // Approximate heap cost of one month: its int[31], the boxed key and the map entry
+    static final int ENTRY_BYTES = (16 + 31*4) + 16 + 40;
+
+    /**
+     * Where the counts of a month missing from the cache come from.
+     */
+    interface Source{
+        /**
+         * Fills in the zeroed counts of a month missing from the cache.
+         * @return Whether the counts are current and may be cached
+         */
+        boolean fillCounts(int monthIndex, int[] counts);
+    }
+
+    private final LinkedHashMap<Integer,int[]> months = new LinkedHashMap<Integer,int[]>(16, 0.75f, true);
+    private int maxBytes;
+    private int hits;
+    private int misses;
+    private int evictions;
+
+    MonthEventCache(int maxBytes){
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return Counts of the month, to be read only, or null if it is not cached
+     */
+    synchronized int[] get(int monthIndex){
+        int[] counts = months.get(monthIndex);
+        if(counts!=null) hits++;
+        else misses++;
+        return counts;
+    }
+
+    /**
+     * Copies the month's cached counts, or else has the source fill them in and caches a copy
+     * of them if they are current.
+     * @param counts Receives the count of each day, 31 long
+     * @return Mask with bit (day-1) set for every day of the month with an event
+     */
+    int load(int monthIndex, int[] counts, Source source){
+        int[] cached = get(monthIndex);
+        if(cached!=null){
+            System.arraycopy(cached, 0, counts, 0, counts.length);
+        }else{
+            Arrays.fill(counts, 0);
+            if(source.fillCounts(monthIndex, counts)) put(monthIndex, counts.clone());
+        }
+        return MonthBinding.getEventMask(counts, DayMath.daysInMonth(monthIndex));
+    }
+
+    /**
+     * @return Whether the month is cached, without counting as a hit or miss or use
+     */
+    synchronized boolean contains(int monthIndex){
+        return months.containsKey(monthIndex);
+    }
+
+    /**
+     * @param counts Counts of the month, kept as is and must no longer be modified
+     */
+    synchronized void put(int monthIndex, int[] counts){
+        months.put(monthIndex, counts);
+        trim();
+    }
+
+    /**
+     * Adds the deltas to the counts of a cached month, no count going below 0. The counts
+     * handed out before are left alone.
+     * @param deltas Change of each day's count, 31 long
+     * @return The month's new counts, to be read only, or null if it is not cached
+     */
+    synchronized int[] addToCounts(int monthIndex, int[] deltas){
+        int[] counts = months.get(monthIndex);
+        if(counts==null) return null;
+        int[] updated = new int[counts.length];
+        for(int i=0;i<counts.length;i++) updated[i] = Math.max(0, counts[i] + deltas[i]);
+        months.put(monthIndex, updated);
+        return updated;
+    }
+
+    /**
+     * Removes every month from first to last, both included.
+     */
+    synchronized void removeRange(int firstMonthIndex, int lastMonthIndex){
+        Iterator<Integer> iterator = months.keySet().iterator();
+        while(iterator.hasNext()){
+            int monthIndex = iterator.next();
+            if(monthIndex>=firstMonthIndex && monthIndex<=lastMonthIndex) iterator.remove();
+        }
+    }
+
+    synchronized void clear(){
+        months.clear();
+    }
+
+    synchronized void setMaxBytes(int maxBytes){
+        this.maxBytes = maxBytes;
+        trim();
+    }
+
+    synchronized int getMaxBytes(){
+        return maxBytes;
+    }
+
+    synchronized int sizeBytes(){
+        return months.size() * ENTRY_BYTES;
+    }
+
+    synchronized int getHits(){
+        return hits;
+    }
+
+    synchronized int getMisses(){
+        return misses;
+    }
+
+    synchronized int getEvictions(){
+        return evictions;
+    }
+
+    private void trim(){
+        Iterator<Map.Entry<Integer,int[]>> iterator = months.entrySet().iterator();
+        while(months.size()*ENTRY_BYTES>maxBytes && iterator.hasNext()){
+            iterator.next();
+            iterator.remove();
+            evictions++;
+        }
+    }
+}
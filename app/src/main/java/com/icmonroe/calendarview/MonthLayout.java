@@ -0,0 +1,79 @@
+package com.icmonroe.calendarview;
+
+/**
+ * Immutable grid geometry of a month. Layouts are computed once per month index and kept in a
+ * small direct mapped cache, so the pager, the month adapters and measurement can ask for them
+ * as often as they like.
+ */
+final class MonthLayout {
+
+    // Must be a power of two, covers about 21 years before a slot is reused
+    private static final int CACHE_SIZE = 256;
+    private static final MonthLayout[] cache = new MonthLayout[CACHE_SIZE];
+
+    final int monthIndex;
+    // First day of the layout's weeks, Sunday being 0
+    final int firstDayOfWeek;
+    final int firstEpochDay;
+    // Blank cells before the first day of the month
+    final int daysBeforeFirstDay;
+    final int daysInMonth;
+    // Rows of days, not counting the title or days of week rows
+    final int weekRows;
+    // Cells used by the month, blanks included
+    final int cellCount;
+
+    private MonthLayout(int monthIndex, int firstDayOfWeek){
+        this.monthIndex = monthIndex;
+        this.firstDayOfWeek = firstDayOfWeek;
+        firstEpochDay = DayMath.firstEpochDayOfMonth(monthIndex);
+        daysBeforeFirstDay = DayMath.daysBeforeFirstDay(monthIndex, firstDayOfWeek);
+        daysInMonth = DayMath.daysInMonth(monthIndex);
+        cellCount = daysBeforeFirstDay + daysInMonth;
+        weekRows = (cellCount + 6) / 7;
+    }
+
+    /**
+     * @param monthIndex Month index, see {@link DayMath}
+     * @return Layout of the month in weeks starting Sunday, shared and safe to use from any thread
+     */
+    static MonthLayout get(int monthIndex){
+        return get(monthIndex, 0);
+    }
+
+    /**
+     * @param firstDayOfWeek First day of the weeks, Sunday being 0
+     */
+    static MonthLayout get(int monthIndex, int firstDayOfWeek){
+        int slot = (monthIndex + firstDayOfWeek*CACHE_SIZE/7) & (CACHE_SIZE-1);
+        MonthLayout layout = cache[slot];
+        if(layout==null || layout.monthIndex!=monthIndex || layout.firstDayOfWeek!=firstDayOfWeek){
+            // Racing threads at worst compute the same immutable value twice
+            layout = new MonthLayout(monthIndex, firstDayOfWeek);
+            cache[slot] = layout;
+        }
+        return layout;
+    }
+
+    int getRows(boolean hasTitle, boolean hasDaysOfWeek){
+        return weekRows + (hasTitle ? 1 : 0) + (hasDaysOfWeek ? 1 : 0);
+    }
+
+    /**
+     * @return Epoch day of the given day of this month
+     */
+    int epochDay(int dayOfMonth){
+        return firstEpochDay + dayOfMonth - 1;
+    }
+
+    /**
+     * @return Day of this month for the epoch day, out of 1..daysInMonth if it is another month
+     */
+    int dayOfMonth(int epochDay){
+        return epochDay - firstEpochDay + 1;
+    }
+
+    boolean contains(int epochDay){
+        return epochDay>=firstEpochDay && epochDay<firstEpochDay+daysInMonth;
+    }
+}
@@ -0,0 +1,143 @@
+package com.icmonroe.calendarview;
+
+import android.graphics.Bitmap;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of rendered mini-month bitmaps, one per month, all of the same
+ * size and bounded by a byte budget. Evicted bitmaps go to the {@link BitmapPool} so new tiles
+ * are drawn into them instead of allocated. Used from the UI thread only.
+ */
+final class MonthTileCache {
+
+    static final Bitmap.Config CONFIG = Bitmap.Config.ARGB_8888;
+
+    // A year page draws twelve tiles in one frame, none of them may be reused during it
+    static final int MIN_TILES = 12;
+
+    private final LinkedHashMap<Integer,Bitmap> tiles = new LinkedHashMap<Integer,Bitmap>(16, 0.75f, true);
+    private int maxBytes;
+    // Tiles kept whatever the budget, those of every year page attached to the pager
+    private int minTiles = MIN_TILES;
+    private int width;
+    private int height;
+    private int hits;
+    private int misses;
+
+    MonthTileCache(int maxBytes){
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Sets the size of every tile, dropping the cached ones if it changed.
+     */
+    void setTileSize(int width, int height){
+        if(width==this.width && height==this.height) return;
+        clear();
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * @return Tile of the month, or null if it is not cached
+     */
+    Bitmap get(int monthIndex){
+        Bitmap tile = tiles.get(monthIndex);
+        if(tile!=null) hits++;
+        else misses++;
+        return tile;
+    }
+
+    /**
+     * @return A bitmap of the tile size to render a tile into, from the pool if it has one
+     */
+    Bitmap obtain(){
+        Bitmap bitmap = BitmapPool.get().acquire(width, height, CONFIG);
+        if(bitmap!=null){
+            bitmap.eraseColor(0);
+            return bitmap;
+        }
+        return Bitmap.createBitmap(width, height, CONFIG);
+    }
+
+    void put(int monthIndex, Bitmap tile){
+        Bitmap previous = tiles.put(monthIndex, tile);
+        if(previous!=null && previous!=tile) BitmapPool.get().release(previous);
+        trim(maxBytes, minTiles);
+    }
+
+    /**
+     * Removes the tiles of every month from first to last, both included.
+     */
+    void removeRange(int firstMonthIndex, int lastMonthIndex){
+        Iterator<Map.Entry<Integer,Bitmap>> iterator = tiles.entrySet().iterator();
+        while(iterator.hasNext()){
+            Map.Entry<Integer,Bitmap> entry = iterator.next();
+            int monthIndex = entry.getKey();
+            if(monthIndex>=firstMonthIndex && monthIndex<=lastMonthIndex){
+                iterator.remove();
+                BitmapPool.get().release(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Releases every tile, the year pages drawing them must be invalidated.
+     */
+    void clear(){
+        trim(0, 0);
+    }
+
+    /**
+     * Keeps only the most recently used tiles, as many as the year pages attached draw.
+     */
+    void trimToMinimum(){
+        trim(0, minTiles);
+    }
+
+    /**
+     * Sets how many tiles are kept whatever the budget. Pages still draw the tiles they drew
+     * last, so it must cover every year page attached, twelve tiles each.
+     */
+    void setMinTiles(int minTiles){
+        this.minTiles = Math.max(MIN_TILES, minTiles);
+    }
+
+    void setMaxBytes(int maxBytes){
+        this.maxBytes = maxBytes;
+        trim(maxBytes, minTiles);
+    }
+
+    int getMaxBytes(){
+        return maxBytes;
+    }
+
+    int sizeBytes(){
+        return tiles.size() * tileBytes();
+    }
+
+    int getHits(){
+        return hits;
+    }
+
+    int getMisses(){
+        return misses;
+    }
+
+    private int tileBytes(){
+        // Four bytes per pixel for ARGB_8888
+        return width * height * 4;
+    }
+
+    private void trim(int bytes, int minTiles){
+        Iterator<Map.Entry<Integer,Bitmap>> iterator = tiles.entrySet().iterator();
+        while(tiles.size()>minTiles && tiles.size()*tileBytes()>bytes && iterator.hasNext()){
+            Bitmap tile = iterator.next().getValue();
+            iterator.remove();
+            BitmapPool.get().release(tile);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.icmonroe.calendarview;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DayMathTest {
+
+    @Test
+    public void epochDayMatchesCalendar(){
+        GregorianCalendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        // Proleptic Gregorian, as DayMath has no Julian cut over
+        calendar.setGregorianChange(new Date(Long.MIN_VALUE));
+        calendar.clear();
+        calendar.set(1600, Calendar.JANUARY, 1);
+        int expected = DayMath.epochDay(1600, Calendar.JANUARY, 1);
+        for(int i=0;i<800*366;i++){
+            assertEquals(expected, DayMath.epochDay(calendar));
+            assertEquals(calendar.get(Calendar.DAY_OF_MONTH), DayMath.dayOfMonthOfEpochDay(expected));
+            assertEquals(DayMath.monthIndex(calendar), DayMath.monthIndexOfEpochDay(expected));
+            assertEquals(calendar.get(Calendar.DAY_OF_WEEK) - Calendar.SUNDAY, DayMath.dayOfWeek(expected));
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            expected++;
+        }
+    }
+
+    @Test
+    public void epochDayOfKnownDays(){
+        assertEquals(0, DayMath.epochDay(1970, Calendar.JANUARY, 1));
+        assertEquals(-1, DayMath.epochDay(1969, Calendar.DECEMBER, 31));
+        assertEquals(10957, DayMath.epochDay(2000, Calendar.JANUARY, 1));
+        assertEquals(11017, DayMath.epochDay(2000, Calendar.MARCH, 1));
+        // 1970-01-01 was a Thursday
+        assertEquals(Calendar.THURSDAY - Calendar.SUNDAY, DayMath.dayOfWeek(0));
+        assertEquals(Calendar.WEDNESDAY - Calendar.SUNDAY, DayMath.dayOfWeek(-1));
+    }
+
+    @Test
+    public void monthIndexRoundTrip(){
+        for(int monthIndex=DayMath.monthIndex(-400, Calendar.JANUARY);monthIndex<DayMath.monthIndex(2400, Calendar.JANUARY);monthIndex++){
+            int firstDay = DayMath.firstEpochDayOfMonth(monthIndex);
+            int lastDay = firstDay + DayMath.daysInMonth(monthIndex) - 1;
+            assertEquals(monthIndex, DayMath.monthIndexOfEpochDay(firstDay));
+            assertEquals(monthIndex, DayMath.monthIndexOfEpochDay(lastDay));
+            assertEquals(DayMath.firstEpochDayOfMonth(monthIndex + 1), lastDay + 1);
+            assertEquals(monthIndex, DayMath.monthIndex(DayMath.yearOfMonthIndex(monthIndex), DayMath.monthOfMonthIndex(monthIndex)));
+        }
+    }
+
+    @Test
+    public void leapYears(){
+        assertTrue(DayMath.isLeapYear(2000));
+        assertTrue(DayMath.isLeapYear(2016));
+        assertFalse(DayMath.isLeapYear(1900));
+        assertFalse(DayMath.isLeapYear(2015));
+        assertEquals(29, DayMath.daysInMonth(2000, Calendar.FEBRUARY));
+        assertEquals(28, DayMath.daysInMonth(1900, Calendar.FEBRUARY));
+    }
+
+    @Test
+    public void weekIndexRoundTrip(){
+        for(int firstDayOfWeek=0;firstDayOfWeek<7;firstDayOfWeek++){
+            for(int epochDay=-1000;epochDay<1000;epochDay++){
+                int firstDay = DayMath.firstEpochDayOfWeek(DayMath.weekIndex(epochDay, firstDayOfWeek), firstDayOfWeek);
+                assertEquals(firstDayOfWeek, DayMath.dayOfWeek(firstDay));
+                assertTrue(epochDay>=firstDay && epochDay<firstDay+7);
+            }
+        }
+    }
+
+    @Test
+    public void daysBeforeFirstDay(){
+        // June 2014 starts on a Sunday
+        int june = DayMath.monthIndex(2014, Calendar.JUNE);
+        assertEquals(0, DayMath.daysBeforeFirstDay(june));
+        assertEquals(6, DayMath.daysBeforeFirstDay(june, Calendar.MONDAY - Calendar.SUNDAY));
+        assertEquals(1, DayMath.daysBeforeFirstDay(june, Calendar.SATURDAY - Calendar.SUNDAY));
+        for(int monthIndex=DayMath.monthIndex(1960, Calendar.JANUARY);monthIndex<DayMath.monthIndex(1980, Calendar.JANUARY);monthIndex++){
+            for(int firstDayOfWeek=0;firstDayOfWeek<7;firstDayOfWeek++){
+                int blanks = DayMath.daysBeforeFirstDay(monthIndex, firstDayOfWeek);
+                assertTrue(blanks>=0 && blanks<7);
+                assertEquals(firstDayOfWeek, DayMath.dayOfWeek(DayMath.firstEpochDayOfMonth(monthIndex) - blanks));
+            }
+        }
+    }
+
+    @Test
+    public void dayOfMonthLabels(){
+        for(int day=1;day<=31;day++){
+            assertEquals(String.valueOf(day), DayMath.dayOfMonthLabel(day));
+            assertSame(DayMath.dayOfMonthLabel(day), DayMath.dayOfMonthLabel(day));
+        }
+    }
+
+    @Test
+    public void toCalendarRoundTrip(){
+        for(int epochDay=-3000;epochDay<30000;epochDay+=7){
+            assertEquals(epochDay, DayMath.epochDay(DayMath.toCalendar(epochDay)));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.icmonroe.calendarview;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DaySetTest {
+
+    private static final int FIRST_DAY = DayMath.epochDay(2014, Calendar.JANUARY, 30);
+
+    @Test
+    public void addContainsRemove(){
+        DaySet set = new DaySet();
+        assertTrue(set.isEmpty());
+        assertTrue(set.add(FIRST_DAY));
+        assertFalse(set.add(FIRST_DAY));
+        assertTrue(set.contains(FIRST_DAY));
+        assertFalse(set.contains(FIRST_DAY + 1));
+        assertEquals(1, set.size());
+        assertTrue(set.remove(FIRST_DAY));
+        assertFalse(set.remove(FIRST_DAY));
+        assertFalse(set.contains(FIRST_DAY));
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    public void rangeAcrossMonthsAndYears(){
+        DaySet set = new DaySet();
+        int lastDay = DayMath.epochDay(2015, Calendar.MARCH, 2);
+        assertEquals(lastDay - FIRST_DAY + 1, set.addRange(FIRST_DAY, lastDay));
+        assertEquals(lastDay - FIRST_DAY + 1, set.size());
+        assertFalse(set.contains(FIRST_DAY - 1));
+        assertFalse(set.contains(lastDay + 1));
+        // January 30th and 31st, all of February
+        assertEquals(0x60000000, set.getMonthMask(DayMath.monthIndex(2014, Calendar.JANUARY)));
+        assertEquals((1<<28) - 1, set.getMonthMask(DayMath.monthIndex(2014, Calendar.FEBRUARY)));
+        assertEquals(0x3, set.getMonthMask(DayMath.monthIndex(2015, Calendar.MARCH)));
+        // Overlapping ranges only count the days that changed
+        assertEquals(2, set.addRange(FIRST_DAY - 2, FIRST_DAY));
+        assertEquals(3, set.removeRange(lastDay - 2, lastDay + 5));
+        assertEquals(0, set.addRange(lastDay, lastDay - 1));
+    }
+
+    @Test
+    public void daysBeforeEpochAndThirtyFirsts(){
+        DaySet set = new DaySet();
+        int newYearsEve = DayMath.epochDay(1969, Calendar.DECEMBER, 31);
+        int longAgo = DayMath.epochDay(1900, Calendar.JANUARY, 31);
+        assertTrue(set.add(newYearsEve));
+        assertTrue(set.add(longAgo));
+        // The 31st is the mask's top bit
+        assertEquals(1<<30, set.getMonthMask(DayMath.monthIndex(1969, Calendar.DECEMBER)));
+        assertEquals(1<<30, set.getMonthMask(DayMath.monthIndex(1900, Calendar.JANUARY)));
+        assertFalse(set.contains(newYearsEve + 1));
+        assertArrayEquals(new int[]{longAgo, newYearsEve}, set.toEpochDays());
+        assertEquals(30, set.addRange(newYearsEve - 30, newYearsEve));
+        assertEquals(0x7FFFFFFF, set.getMonthMask(DayMath.monthIndex(1969, Calendar.DECEMBER)));
+    }
+
+    @Test
+    public void toEpochDaysIsSorted(){
+        DaySet set = new DaySet();
+        int[] days = {FIRST_DAY + 400, FIRST_DAY - 900, FIRST_DAY, FIRST_DAY + 1, FIRST_DAY + 31};
+        for(int day : days) set.add(day);
+        int[] expected = {FIRST_DAY - 900, FIRST_DAY, FIRST_DAY + 1, FIRST_DAY + 31, FIRST_DAY + 400};
+        assertArrayEquals(expected, set.toEpochDays());
+    }
+
+    @Test
+    public void growsAndKeepsDays(){
+        DaySet set = new DaySet();
+        // A day every other week over ten years, hundreds of months
+        for(int day=FIRST_DAY;day<FIRST_DAY+3650;day+=14) set.add(day);
+        for(int day=FIRST_DAY;day<FIRST_DAY+3650;day++){
+            assertEquals((day - FIRST_DAY) % 14 == 0, set.contains(day));
+        }
+        // Emptied months are dropped when the table grows again
+        set.removeRange(FIRST_DAY, FIRST_DAY + 1825);
+        for(int day=FIRST_DAY+3650;day<FIRST_DAY+7300;day+=14) set.add(day);
+        assertEquals(set.size(), set.toEpochDays().length);
+        assertFalse(set.contains(FIRST_DAY));
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertEquals(0, set.toEpochDays().length);
+    }
+}
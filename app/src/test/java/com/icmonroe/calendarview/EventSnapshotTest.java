@@ -0,0 +1,142 @@
+package com.icmonroe.calendarview;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Calendar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventSnapshotTest {
+
+    private static final int FIRST_MONTH = DayMath.monthIndex(2010, Calendar.JANUARY);
+    private static final int MONTHS = 120;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static int[] counts(int seed){
+        int[] counts = new int[31];
+        for(int i=0;i<counts.length;i++) counts[i] = (seed + i*7) % (EventSnapshot.MAX_COUNT + 1);
+        return counts;
+    }
+
+    @Test
+    public void roundTrip() throws IOException{
+        File file = folder.newFile();
+        EventSnapshot snapshot = EventSnapshot.open(file, FIRST_MONTH, MONTHS);
+        int[] read = new int[31];
+        assertFalse(snapshot.readMonth(FIRST_MONTH, read));
+        for(int month=0;month<MONTHS;month+=3) snapshot.writeMonth(FIRST_MONTH + month, counts(month));
+        snapshot.flush();
+
+        EventSnapshot reopened = EventSnapshot.open(file, FIRST_MONTH, MONTHS);
+        for(int month=0;month<MONTHS;month++){
+            if(month % 3==0){
+                assertTrue(reopened.readMonth(FIRST_MONTH + month, read));
+                assertArrayEquals(counts(month), read);
+            }else{
+                // Told apart from a month without events
+                assertFalse(reopened.readMonth(FIRST_MONTH + month, read));
+            }
+        }
+        assertEquals(file.length(), reopened.sizeBytes());
+    }
+
+    @Test
+    public void countsSaturate() throws IOException{
+        EventSnapshot snapshot = EventSnapshot.open(folder.newFile(), FIRST_MONTH, MONTHS);
+        int[] counts = new int[31];
+        counts[0] = 1000;
+        counts[30] = EventSnapshot.MAX_COUNT + 1;
+        snapshot.writeMonth(FIRST_MONTH, counts);
+        int[] read = new int[31];
+        assertTrue(snapshot.readMonth(FIRST_MONTH, read));
+        assertEquals(EventSnapshot.MAX_COUNT, read[0]);
+        assertEquals(EventSnapshot.MAX_COUNT, read[30]);
+        assertEquals(0, read[15]);
+    }
+
+    @Test
+    public void flushClearsDirty() throws IOException{
+        File file = folder.newFile();
+        EventSnapshot snapshot = EventSnapshot.open(file, FIRST_MONTH, MONTHS);
+        // A new file is rebuilt and so has to be written out
+        assertTrue(snapshot.isDirty());
+        snapshot.flush();
+        assertFalse(snapshot.isDirty());
+        snapshot.writeMonth(FIRST_MONTH, counts(1));
+        assertTrue(snapshot.isDirty());
+        snapshot.flush();
+        assertFalse(snapshot.isDirty());
+        snapshot.writeMonth(FIRST_MONTH - 1, counts(1));
+        assertFalse(snapshot.isDirty());
+        assertFalse(EventSnapshot.open(file, FIRST_MONTH, MONTHS).isDirty());
+    }
+
+    @Test
+    public void monthsOutsideTheRangeAreIgnored() throws IOException{
+        EventSnapshot snapshot = EventSnapshot.open(folder.newFile(), FIRST_MONTH, MONTHS);
+        snapshot.writeMonth(FIRST_MONTH - 1, counts(1));
+        snapshot.writeMonth(FIRST_MONTH + MONTHS, counts(1));
+        int[] read = new int[31];
+        Arrays.fill(read, -1);
+        assertFalse(snapshot.readMonth(FIRST_MONTH - 1, read));
+        assertFalse(snapshot.readMonth(FIRST_MONTH + MONTHS, read));
+        // Left alone when the month was not written
+        assertEquals(-1, read[0]);
+    }
+
+    @Test
+    public void rangeShiftKeepsSharedMonths() throws IOException{
+        File file = folder.newFile();
+        EventSnapshot snapshot = EventSnapshot.open(file, FIRST_MONTH, MONTHS);
+        for(int month=0;month<MONTHS;month++) snapshot.writeMonth(FIRST_MONTH + month, counts(month));
+        snapshot.flush();
+
+        // A year later, with a range one year shorter
+        int shift = 12;
+        int months = MONTHS - 12;
+        EventSnapshot shifted = EventSnapshot.open(file, FIRST_MONTH + shift, months);
+        assertFalse(shifted.covers(FIRST_MONTH));
+        int[] read = new int[31];
+        for(int month=0;month<months;month++){
+            assertTrue(shifted.readMonth(FIRST_MONTH + shift + month, read));
+            assertArrayEquals(counts(shift + month), read);
+        }
+        assertEquals(file.length(), shifted.sizeBytes());
+
+        // Back a year, the months no longer kept are gone
+        EventSnapshot back = EventSnapshot.open(file, FIRST_MONTH, MONTHS);
+        for(int month=0;month<MONTHS;month++){
+            boolean kept = month>=shift && month<shift+months;
+            assertEquals(kept, back.readMonth(FIRST_MONTH + month, read));
+            if(kept) assertArrayEquals(counts(month), read);
+        }
+    }
+
+    @Test
+    public void garbageFileIsRebuilt() throws IOException{
+        File file = folder.newFile();
+        FileOutputStream out = new FileOutputStream(file);
+        try{
+            out.write(new byte[64]);
+        }finally{
+            out.close();
+        }
+        EventSnapshot snapshot = EventSnapshot.open(file, FIRST_MONTH, MONTHS);
+        assertFalse(snapshot.readMonth(FIRST_MONTH, new int[31]));
+        snapshot.writeMonth(FIRST_MONTH, counts(5));
+        int[] read = new int[31];
+        assertTrue(snapshot.readMonth(FIRST_MONTH, read));
+        assertArrayEquals(counts(5), read);
+    }
+}
@@ -0,0 +1,151 @@
+package com.icmonroe.calendarview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the Android free part of paging, selecting days and binding day cells: the
+ * {@link MonthBinding}, layouts, titles, event cache and selection the month pages use, minus
+ * the views. Run by the jmhAllocationCheck task with the gc profiler, which fails when a
+ * benchmark allocates more bytes per operation than its budget in
+ * allocation-budgets.properties. The legacy* benchmarks repeat what the widget did before and
+ * have no budget.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationBenchmark {
+
+    // Two hundred years, more months than the title, layout and event caches hold
+    private static final int FAR_MONTHS = 2400;
+    // Swiping back and forth over a year, every month cached after the first pass
+    private static final int NEAR_MONTHS = 12;
+    // Days toggled by the selection benchmark, three years
+    private static final int SELECTION_DAYS = 3*365;
+
+    private int firstMonthIndex;
+    private int firstEpochDay;
+    private int todayEpochDay;
+    private Calendar today;
+    private int farMonth;
+    private int nearMonth;
+    private int selectionDay;
+    private CalendarLocale calendarLocale;
+    private MonthEventCache eventCache;
+    private DaySet selection;
+    private final MonthBinding binding = new MonthBinding();
+
+    // Stands in for the widget's indicator, which fills in the counts synchronously
+    private final MonthEventCache.Source indicator = new MonthEventCache.Source() {
+        @Override
+        public boolean fillCounts(int monthIndex, int[] counts) {
+            int daysInMonth = DayMath.daysInMonth(monthIndex);
+            for(int day=monthIndex & 3;day<daysInMonth;day+=4) counts[day] = 1;
+            return true;
+        }
+    };
+
+    @Setup
+    public void setUp(){
+        firstMonthIndex = DayMath.monthIndex(1900, Calendar.JANUARY);
+        firstEpochDay = DayMath.firstEpochDayOfMonth(DayMath.monthIndex(2014, Calendar.JANUARY));
+        today = Calendar.getInstance();
+        todayEpochDay = DayMath.epochDay(today);
+        calendarLocale = CalendarLocale.get(Locale.ENGLISH);
+        eventCache = new MonthEventCache(64*1024);
+        selection = new DaySet();
+    }
+
+    private int nextNearMonthIndex(){
+        nearMonth = (nearMonth + 1) % NEAR_MONTHS;
+        return DayMath.monthIndex(2014, Calendar.JANUARY) + nearMonth;
+    }
+
+    /**
+     * Binds a month the way a month page does: its layout, title, selection and events.
+     */
+    private int bindMonth(int monthIndex){
+        MonthLayout layout = MonthLayout.get(monthIndex, calendarLocale.firstDayOfWeek);
+        binding.bind(layout, calendarLocale, true, todayEpochDay, selection.getMonthMask(monthIndex), false);
+        binding.bindEvents(eventCache.load(monthIndex, binding.eventCounts, indicator));
+        return binding.eventMask ^ binding.selectionMask ^ binding.title.length() ^ layout.getRows(true, true);
+    }
+
+    @Benchmark
+    public int pageFar(){
+        farMonth = (farMonth + 1) % FAR_MONTHS;
+        return bindMonth(firstMonthIndex + farMonth);
+    }
+
+    @Benchmark
+    public int pageNear(){
+        return bindMonth(nextNearMonthIndex());
+    }
+
+    @Benchmark
+    public int bindMonthCells(){
+        bindMonth(nextNearMonthIndex());
+        int bound = 0;
+        // As the month adapter binds its cells
+        for(int cell=0;cell<binding.layout.cellCount;cell++){
+            int dayOfMonth = binding.dayOfCell(cell);
+            if(dayOfMonth<=0) continue;
+            String label = DayMath.dayOfMonthLabel(dayOfMonth);
+            bound += label.length() + binding.dayState(dayOfMonth, true);
+        }
+        return bound;
+    }
+
+    @Benchmark
+    public int legacyBindMonthCells(){
+        Calendar month = DayMath.monthToCalendar(nextNearMonthIndex());
+        int daysInMonth = month.getActualMaximum(Calendar.DAY_OF_MONTH);
+        int bound = 0;
+        for(int dayOfMonth=1;dayOfMonth<=daysInMonth;dayOfMonth++){
+            String label = dayOfMonth + "";
+            boolean isToday = DayMath.sameDay(legacyGetDay(month, dayOfMonth), today);
+            boolean hasEvent = legacyGetDay(month, dayOfMonth).get(Calendar.DAY_OF_WEEK)==Calendar.MONDAY;
+            bound += label.length() + (isToday ? 1 : 0) + (hasEvent ? 2 : 0);
+        }
+        return bound;
+    }
+
+    private static Calendar legacyGetDay(Calendar month, int dayOfMonth){
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(month.get(Calendar.YEAR), month.get(Calendar.MONTH), dayOfMonth);
+        return calendar;
+    }
+
+    @Benchmark
+    public boolean selectDayMultiple(){
+        selectionDay = (selectionDay + 1) % SELECTION_DAYS;
+        int epochDay = firstEpochDay + selectionDay;
+        return selection.contains(epochDay) ? selection.remove(epochDay) : selection.add(epochDay);
+    }
+
+    @Benchmark
+    public Calendar selectDaySingle(){
+        selectionDay = (selectionDay + 1) % SELECTION_DAYS;
+        int epochDay = firstEpochDay + selectionDay;
+        MonthLayout layout = MonthLayout.get(DayMath.monthIndexOfEpochDay(epochDay), calendarLocale.firstDayOfWeek);
+        if(binding.layout!=layout) bindMonth(layout.monthIndex);
+        binding.selectDay(layout.dayOfMonth(epochDay));
+        // The listener is handed a Calendar of the day, the one allocation left on a tap
+        return DayMath.toCalendar(epochDay);
+    }
+}
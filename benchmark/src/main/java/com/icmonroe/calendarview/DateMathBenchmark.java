@@ -0,0 +1,106 @@
+package com.icmonroe.calendarview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the date math behind month paging and cell binding. The legacy* benchmarks keep
+ * the Calendar based versions the widget used before, as a reference point.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateMathBenchmark {
+
+    // Walks over 40 years of months so results are not one cached month
+    private static final int MONTHS = 480;
+
+    private int firstMonthIndex;
+    private int month;
+    private Calendar first;
+    private Calendar second;
+    private int firstEpochDay;
+    private int secondEpochDay;
+    private CalendarLocale calendarLocale;
+
+    @Setup
+    public void setUp(){
+        firstMonthIndex = DayMath.monthIndex(1990, Calendar.JANUARY);
+        first = Calendar.getInstance();
+        second = Calendar.getInstance();
+        second.add(Calendar.HOUR_OF_DAY, 1);
+        firstEpochDay = DayMath.epochDay(first);
+        secondEpochDay = DayMath.epochDay(second);
+        calendarLocale = CalendarLocale.get(Locale.ENGLISH);
+    }
+
+    private int nextMonthIndex(){
+        month = (month + 1) % MONTHS;
+        return firstMonthIndex + month;
+    }
+
+    @Benchmark
+    public int rowsForMonth(){
+        return MonthLayout.get(nextMonthIndex()).getRows(true, true);
+    }
+
+    @Benchmark
+    public int daysBeforeFirstDay(){
+        return DayMath.daysBeforeFirstDay(nextMonthIndex());
+    }
+
+    @Benchmark
+    public boolean sameDay(){
+        return DayMath.sameDay(first, second);
+    }
+
+    @Benchmark
+    public boolean sameEpochDay(){
+        return firstEpochDay==secondEpochDay;
+    }
+
+    @Benchmark
+    public String titleForMonth(){
+        return calendarLocale.monthTitle(nextMonthIndex(), true);
+    }
+
+    @Benchmark
+    public String legacyTitleForMonth(){
+        SimpleDateFormat formatMonth = new SimpleDateFormat("MMMM yyyy", Locale.ENGLISH);
+        return formatMonth.format(DayMath.monthToCalendar(nextMonthIndex()).getTime());
+    }
+
+    @Benchmark
+    public int legacyRowsForMonth(){
+        Calendar month = DayMath.monthToCalendar(nextMonthIndex());
+        int daysInMonth = month.getActualMaximum(Calendar.DAY_OF_MONTH);
+        return (int) Math.ceil(((daysInMonth + legacyDaysBeforeFirstDay(month)) / 7.0) + 2);
+    }
+
+    @Benchmark
+    public int legacyDaysBeforeFirstDay(){
+        return legacyDaysBeforeFirstDay(DayMath.monthToCalendar(nextMonthIndex()));
+    }
+
+    private static int legacyDaysBeforeFirstDay(Calendar month){
+        Calendar cal = Calendar.getInstance();
+        cal.set(month.get(Calendar.YEAR), month.get(Calendar.MONTH), 1);
+        return cal.get(Calendar.DAY_OF_WEEK) - 1;
+    }
+}